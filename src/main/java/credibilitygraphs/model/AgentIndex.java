@@ -0,0 +1,209 @@
+package credibilitygraphs.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps agent ids onto dense indices 0, 1, ..., size - 1, so that the arrays of a model are
+ * proportional to the number of live agents rather than to the largest agent id.
+ * <p>
+ * Indices follow the order of ids, so that a model that iterates over indices visits agents in the
+ * same order as one that indexes its arrays by ids. When agents leave or join between existing
+ * ones, the indices of the others move, keeping their relative order. With ids that only grow,
+ * such as 0, 1, ..., n - 1, the index of an agent is its id.
+ */
+final class AgentIndex {
+    private final Map<Integer, Integer> indices = new HashMap<>();
+    private int[] ids = new int[0];
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the agent with given id, or -1 if the agent is not live.
+     */
+    int indexOf(int id) {
+        final Integer index = indices.get(id);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the id of the agent at given index.
+     */
+    int id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Updates the index to given live agents. Agents that are not in the list are removed, and the
+     * ones that are new are inserted in the order of their ids.
+     *
+     * @return for every previous index, the new index of its agent, or -1 if the agent has left;
+     * null if no existing index changes, which is when no agent has left and every new one has a
+     * larger id than the existing ones
+     */
+    int[] update(List<Integer> agents) {
+        final int[] live = agents.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+
+        // the existing agents keep their indices when they all stay at the start of the live ones
+        boolean kept = live.length >= size;
+        for (int i = 0; kept && i < size; i++) {
+            kept = live[i] == ids[i];
+        }
+
+        if (kept) {
+            if (live.length > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(live.length, 2 * ids.length));
+            }
+            for (int i = size; i < live.length; i++) {
+                ids[i] = live[i];
+                indices.put(live[i], i);
+            }
+            size = live.length;
+            return null;
+        }
+
+        final int[] moves = new int[size];
+        for (int i = 0; i < size; i++) {
+            moves[i] = Arrays.binarySearch(live, ids[i]);
+            if (moves[i] < 0) {
+                moves[i] = -1;
+                indices.remove(ids[i]);
+            }
+        }
+
+        ids = live.length > ids.length ? live : Arrays.copyOf(live, ids.length);
+        for (int i = 0; i < live.length; i++) {
+            indices.put(live[i], i);
+        }
+        size = live.length;
+
+        return moves;
+    }
+
+    /**
+     * Moves the elements at the previous indices to their new ones according to moves, as returned
+     * by {@link #update(List)}, and empties the other indices below the new and the previous size.
+     * Moves keep the order of elements, so they are done in place: the elements that move towards
+     * the start in ascending order, and the ones that move towards the end in descending order.
+     */
+    static void move(int[] moves, int size, Slots slots) {
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i] >= 0 && moves[i] < i) {
+                slots.move(i, moves[i]);
+            }
+        }
+        for (int i = moves.length - 1; i >= 0; i--) {
+            if (moves[i] > i) {
+                slots.move(i, moves[i]);
+            }
+        }
+
+        // empty the indices that no element moved to; the targets of moves are ascending
+        final int limit = Math.max(moves.length, size);
+        int next = 0;
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i] >= 0) {
+                for (; next < moves[i]; next++) {
+                    slots.clear(next);
+                }
+                next++;
+            }
+        }
+        for (; next < limit; next++) {
+            slots.clear(next);
+        }
+    }
+
+    /**
+     * The elements of the arrays that {@link #move(int[], int, Slots)} moves.
+     */
+    interface Slots {
+        void move(int from, int to);
+
+        void clear(int index);
+    }
+
+    /**
+     * Moves the rows and columns of a square matrix according to moves, and sets the elements of
+     * the other rows and columns below the new and the previous size to empty.
+     */
+    static void move(double[][] matrix, int[] moves, int size, double empty) {
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i] >= 0) {
+                move(matrix[i], moves, size, empty);
+            }
+        }
+
+        final int limit = Math.max(moves.length, size);
+        move(moves, size, new Slots() {
+            @Override
+            public void move(int from, int to) {
+                // swap rows, so that the rows of removed agents end up where no agent moved
+                final double[] row = matrix[to];
+                matrix[to] = matrix[from];
+                matrix[from] = row;
+            }
+
+            @Override
+            public void clear(int index) {
+                Arrays.fill(matrix[index], 0, limit, empty);
+            }
+        });
+    }
+
+    /**
+     * Moves the elements of an array according to moves and sets the other ones to empty.
+     */
+    static void move(double[] array, int[] moves, int size, double empty) {
+        move(moves, size, new Slots() {
+            @Override
+            public void move(int from, int to) {
+                array[to] = array[from];
+            }
+
+            @Override
+            public void clear(int index) {
+                array[index] = empty;
+            }
+        });
+    }
+
+    /**
+     * Moves the elements of an array according to moves and sets the other ones to 0.
+     */
+    static void move(int[] array, int[] moves, int size) {
+        move(moves, size, new Slots() {
+            @Override
+            public void move(int from, int to) {
+                array[to] = array[from];
+            }
+
+            @Override
+            public void clear(int index) {
+                array[index] = 0;
+            }
+        });
+    }
+
+    /**
+     * Moves the elements of an array according to moves and sets the other ones to null.
+     */
+    static <T> void move(T[] array, int[] moves, int size) {
+        move(moves, size, new Slots() {
+            @Override
+            public void move(int from, int to) {
+                array[to] = array[from];
+            }
+
+            @Override
+            public void clear(int index) {
+                array[index] = null;
+            }
+        });
+    }
+}
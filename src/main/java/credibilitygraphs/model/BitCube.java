@@ -0,0 +1,200 @@
+package credibilitygraphs.model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * A cube of bits, one square bit matrix per reporter, whose rows are packed into 64-bit words.
+ * <p>
+ * The matrix of every reporter is stored in a single buffer, either on the heap or in direct
+ * (off-heap) memory. Off-heap cubes keep the large opinion matrices out of the garbage collected
+ * heap; their memory should be given back with {@link #release()} once the cube is no longer used.
+ * Matrices are allocated when first written, and can be dropped when no longer needed, so that
+ * memory scales with the largest number of matrices in use at once. Dropped matrices are kept for
+ * reuse, so that a reporter whose matrix is dropped and needed again in turn does not allocate and
+ * free a buffer every time.
+ */
+final class BitCube {
+    /**
+     * Whether models allocate their cubes off-heap by default.
+     */
+    static final boolean OFF_HEAP = Boolean.getBoolean("credibilitygraphs.offHeap");
+
+    private static final Cleaner CLEANER = Cleaner.load();
+
+    final int capacity;
+    final int words;
+    final boolean offHeap;
+    private LongBuffer[] matrices;
+    private ByteBuffer[] buffers;
+
+    // dropped matrices and their buffers, which are reused before new ones are allocated
+    private LongBuffer[] freeMatrices;
+    private ByteBuffer[] freeBuffers;
+    private int free = 0;
+
+    BitCube(int capacity, boolean offHeap) {
+        this.capacity = capacity;
+        this.words = Bits.words(capacity);
+        this.offHeap = offHeap;
+        this.matrices = new LongBuffer[capacity];
+        this.buffers = new ByteBuffer[capacity];
+        this.freeMatrices = new LongBuffer[capacity];
+        this.freeBuffers = new ByteBuffer[capacity];
+    }
+
+    /**
+     * The matrix of given reporter, allocated and empty if it was not used yet; the word w of row i
+     * is at index i * words + w.
+     */
+    LongBuffer matrix(int reporter) {
+        if (matrices[reporter] == null) {
+            if (free > 0) {
+                free--;
+                matrices[reporter] = freeMatrices[free];
+                buffers[reporter] = freeBuffers[free];
+                freeMatrices[free] = null;
+                freeBuffers[free] = null;
+
+                for (int i = 0; i < capacity * words; i++) {
+                    matrices[reporter].put(i, 0L);
+                }
+            } else if (offHeap) {
+                buffers[reporter] = ByteBuffer.allocateDirect(capacity * words * Long.BYTES)
+                        .order(ByteOrder.nativeOrder());
+                matrices[reporter] = buffers[reporter].asLongBuffer();
+            } else {
+                matrices[reporter] = LongBuffer.wrap(new long[capacity * words]);
+            }
+        }
+
+        return matrices[reporter];
+    }
+
+    /**
+     * Whether the matrix of given reporter is allocated; the matrices that are not are empty.
+     */
+    boolean contains(int reporter) {
+        return matrices[reporter] != null;
+    }
+
+    boolean get(int reporter, int row, int bit) {
+        final LongBuffer matrix = matrices[reporter];
+        return matrix != null && (matrix.get(row * words + (bit >>> 6)) & (1L << bit)) != 0;
+    }
+
+    void set(int reporter, int row, int bit) {
+        final LongBuffer matrix = matrix(reporter);
+        final int index = row * words + (bit >>> 6);
+        matrix.put(index, matrix.get(index) | (1L << bit));
+    }
+
+    /**
+     * Clears the first size rows of the matrix of given reporter.
+     */
+    void clear(int reporter, int size) {
+        final LongBuffer matrix = matrices[reporter];
+        if (matrix == null) {
+            return;
+        }
+
+        for (int i = 0; i < size * words; i++) {
+            matrix.put(i, 0L);
+        }
+    }
+
+    /**
+     * Drops the matrix of given reporter, which becomes empty. Its memory is kept for the next matrix
+     * that is allocated.
+     */
+    void drop(int reporter) {
+        if (matrices[reporter] == null) {
+            return;
+        }
+
+        freeMatrices[free] = matrices[reporter];
+        freeBuffers[free] = buffers[reporter];
+        free++;
+
+        matrices[reporter] = null;
+        buffers[reporter] = null;
+    }
+
+    /**
+     * Copies the contents of given smaller cube into the top-left corner of this one.
+     */
+    void copyFrom(BitCube other) {
+        for (int reporter = 0; reporter < other.capacity; reporter++) {
+            final LongBuffer from = other.matrices[reporter];
+            if (from == null) {
+                continue;
+            }
+
+            final LongBuffer to = matrix(reporter);
+            for (int i = 0; i < other.capacity; i++) {
+                for (int w = 0; w < other.words; w++) {
+                    to.put(i * words + w, from.get(i * other.words + w));
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees the memory of an off-heap cube right away, instead of when the buffers are garbage collected.
+     * The cube cannot be used afterwards.
+     */
+    void release() {
+        if (matrices == null) {
+            return;
+        }
+
+        if (offHeap) {
+            for (ByteBuffer buffer : buffers) {
+                if (buffer != null) {
+                    CLEANER.clean(buffer);
+                }
+            }
+            for (int i = 0; i < free; i++) {
+                CLEANER.clean(freeBuffers[i]);
+            }
+        }
+
+        matrices = null;
+        buffers = null;
+        freeMatrices = null;
+        freeBuffers = null;
+        free = 0;
+    }
+
+    /**
+     * Frees direct buffers explicitly, using sun.misc.Unsafe#invokeCleaner on JDK 9 and newer.
+     * Where that is not available, the memory is freed when the buffer is garbage collected.
+     */
+    private interface Cleaner {
+        void clean(ByteBuffer buffer);
+
+        static Cleaner load() {
+            try {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                final Object unsafe = field.get(null);
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+
+                return buffer -> {
+                    try {
+                        invokeCleaner.invoke(unsafe, buffer);
+                    } catch (ReflectiveOperationException e) {
+                        // leave it to the garbage collector
+                    }
+                };
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return buffer -> {
+                };
+            }
+        }
+    }
+}
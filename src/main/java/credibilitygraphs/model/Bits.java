@@ -0,0 +1,57 @@
+package credibilitygraphs.model;
+
+/**
+ * Helpers for boolean matrices whose rows are packed into 64-bit words.
+ * Bit j of a row is stored in word j / 64 at position j % 64.
+ */
+final class Bits {
+    private Bits() {
+    }
+
+    /**
+     * Number of words needed to store a row of given number of bits.
+     */
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    static boolean get(long[] row, int bit) {
+        return (row[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    static void set(long[] row, int bit) {
+        row[bit >>> 6] |= 1L << bit;
+    }
+
+    static void clear(long[] row, int bit) {
+        row[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /**
+     * Packs given boolean matrix into rows of words.
+     */
+    static long[][] pack(boolean[][] matrix) {
+        final long[][] packed = new long[matrix.length][words(matrix.length)];
+
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (matrix[i][j]) {
+                    set(packed[i], j);
+                }
+            }
+        }
+
+        return packed;
+    }
+
+    /**
+     * Unpacks given packed matrix into the boolean matrix parameter.
+     */
+    static void unpack(long[][] packed, boolean[][] matrix) {
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                matrix[i][j] = get(packed[i], j);
+            }
+        }
+    }
+}
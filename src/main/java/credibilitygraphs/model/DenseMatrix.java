@@ -0,0 +1,191 @@
+package credibilitygraphs.model;
+
+import java.util.Arrays;
+
+/**
+ * A square matrix of doubles stored in a single array in row-major order:
+ * the element (i, j) is stored at index i * size + j.
+ * <p>
+ * The array may be larger than size * size, so that the matrix can grow without reallocation;
+ * see {@link #resize(int)}.
+ */
+public class DenseMatrix {
+    /**
+     * The largest size of a matrix, so that the index i * size + j of every element fits into an int.
+     */
+    static final int MAX_SIZE = 46340;
+
+    int size;
+    double[] data;
+
+    /**
+     * Whether this matrix of strongest paths may hold paths stronger than its graph, since an edge
+     * was overwritten with a smaller value; see {@link Matrices#expand(DenseMatrix, int, int, double, DenseMatrix)}.
+     */
+    boolean stale = false;
+
+    DenseMatrix(int size) {
+        checkSize(size);
+        this.size = size;
+        this.data = new double[size * size];
+    }
+
+    /**
+     * Creates a matrix with the contents of given jagged array.
+     */
+    static DenseMatrix of(double[][] matrix) {
+        final DenseMatrix dense = new DenseMatrix(matrix.length);
+        for (int i = 0; i < matrix.length; i++) {
+            System.arraycopy(matrix[i], 0, dense.data, i * dense.size, dense.size);
+        }
+        return dense;
+    }
+
+    /**
+     * Throws an IllegalArgumentException if a matrix of given size would be larger than {@link #MAX_SIZE}.
+     */
+    static void checkSize(int size) {
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException(String.format("Matrix size %d exceeds %d", size, MAX_SIZE));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The largest size this matrix can grow to without reallocating its array.
+     */
+    int capacity() {
+        return (int) Math.sqrt(data.length);
+    }
+
+    double get(int i, int j) {
+        return data[i * size + j];
+    }
+
+    void set(int i, int j, double value) {
+        data[i * size + j] = value;
+    }
+
+    void add(int i, int j, double value) {
+        data[i * size + j] += value;
+    }
+
+    /**
+     * Overwrites this matrix with the contents of given matrix of the same size.
+     */
+    void copyFrom(DenseMatrix other) {
+        System.arraycopy(other.data, 0, data, 0, size * size);
+        stale = other.stale;
+    }
+
+    /**
+     * Sets all elements to value.
+     */
+    void fill(double value) {
+        Arrays.fill(data, 0, size * size, value);
+    }
+
+    /**
+     * Makes sure the matrix can grow to given size without reallocating its array.
+     */
+    void ensureCapacity(int capacity) {
+        checkSize(capacity);
+        if (capacity > capacity()) {
+            final double[] grown = new double[capacity * capacity];
+            System.arraycopy(data, 0, grown, 0, size * size);
+            data = grown;
+        }
+    }
+
+    /**
+     * Grows the matrix to given size, keeping its contents in the top-left corner and filling the new
+     * rows and columns with zeros. When the array is too small, its capacity is at least doubled, so
+     * that a matrix growing by one row at a time is reallocated only O(log n) times.
+     */
+    void resize(int size) {
+        if (size <= this.size) {
+            return;
+        }
+
+        if (size > capacity()) {
+            checkSize(size);
+            ensureCapacity(Math.min(Math.max(size, 2 * capacity()), MAX_SIZE));
+        }
+
+        // move rows to their new offsets, starting with the last one so that no row is overwritten
+        final int old = this.size;
+        for (int i = old - 1; i > 0; i--) {
+            System.arraycopy(data, i * old, data, i * size, old);
+        }
+        for (int i = 0; i < old; i++) {
+            Arrays.fill(data, i * size + old, (i + 1) * size, 0);
+        }
+        Arrays.fill(data, old * size, size * size, 0);
+
+        this.size = size;
+    }
+
+    /**
+     * Moves the rows and columns to the indices in moves, or removes them where the entry is
+     * negative, and resizes the matrix to given size; see {@link AgentIndex#update(java.util.List)}.
+     * The rows and columns that no element moved to are filled with zeros.
+     */
+    void move(int[] moves, int size) {
+        final int old = this.size;
+
+        // when elements only move towards the start of the array, they can be moved in place
+        boolean compacting = size <= old;
+        for (int i = 0; compacting && i < old; i++) {
+            compacting = moves[i] <= i;
+        }
+
+        final double[] previous = compacting ? data : Arrays.copyOf(data, old * old);
+        if (!compacting) {
+            if (size > capacity()) {
+                checkSize(size);
+                ensureCapacity(Math.min(Math.max(size, 2 * capacity()), MAX_SIZE));
+            }
+            Arrays.fill(data, 0, size * size, 0);
+        }
+
+        final boolean[] moved = new boolean[size];
+        for (int i = 0; i < old; i++) {
+            if (moves[i] >= 0) {
+                moved[moves[i]] = true;
+                for (int j = 0; j < old; j++) {
+                    if (moves[j] >= 0) {
+                        data[moves[i] * size + moves[j]] = previous[i * old + j];
+                    }
+                }
+            }
+        }
+
+        if (compacting) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (!moved[i] || !moved[j]) {
+                        data[i * size + j] = 0;
+                    }
+                }
+            }
+        }
+
+        this.size = size;
+    }
+
+    double[][] toArray() {
+        final double[][] matrix = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(data, i * size, matrix[i], 0, size);
+        }
+        return matrix;
+    }
+
+    @Override
+    public String toString() {
+        return Matrices.printMatrix(toArray());
+    }
+}
@@ -0,0 +1,78 @@
+package credibilitygraphs.model;
+
+/**
+ * A compact snapshot of the order given by a matrix of comparisons, where comparisons[i][j] is the
+ * strength of i &lt; j: one bit per pair of agents, set when the first agent is above the second.
+ * Agents with neither bit set are equal or incomparable.
+ * <p>
+ * The snapshot also ranks agents by the number of agents they are above. When the relation is
+ * transitive, as it is for the strongest paths of the Schulze method, every agent is ranked before
+ * all agents it is above, so the ranking is a linear extension of the order.
+ */
+final class Dominance {
+    private final long[][] above;
+
+    // agents by the number of agents they are above, most first
+    private final int[] ranking;
+
+    /**
+     * Records agent i above agent j whenever comparisons[i][j] is smaller than comparisons[j][i].
+     */
+    Dominance(DenseMatrix comparisons) {
+        final int size = comparisons.size();
+        final double[] c = comparisons.data;
+        above = new long[size][Bits.words(size)];
+        final int[] wins = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                final int comparison = Double.compare(c[i * size + j], c[j * size + i]);
+                if (comparison < 0) {
+                    Bits.set(above[i], j);
+                    wins[i]++;
+                } else if (comparison > 0) {
+                    Bits.set(above[j], i);
+                    wins[j]++;
+                }
+            }
+        }
+
+        // counting sort by descending wins, which are below size; agents with equal wins keep their order
+        final int[] starts = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            starts[size - wins[i]]++;
+        }
+        for (int w = 0; w < size; w++) {
+            starts[w + 1] += starts[w];
+        }
+
+        ranking = new int[size];
+        for (int i = 0; i < size; i++) {
+            ranking[starts[size - 1 - wins[i]]++] = i;
+        }
+    }
+
+    int size() {
+        return above.length;
+    }
+
+    /**
+     * The agents ordered by the number of agents they are above, most first. The array must not be modified.
+     */
+    int[] ranking() {
+        return ranking;
+    }
+
+    /**
+     * Compares like {@link Double#compare(double, double)} on comparisons[b][a] and comparisons[a][b].
+     */
+    int compare(int a, int b) {
+        if (Bits.get(above[a], b)) {
+            return 1;
+        }
+        if (Bits.get(above[b], a)) {
+            return -1;
+        }
+        return 0;
+    }
+}
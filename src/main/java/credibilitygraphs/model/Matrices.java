@@ -1,19 +1,243 @@
 package credibilitygraphs.model;
 
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 public class Matrices {
+    /**
+     * Matrices of at least this size are closed with the blocked Floyd--Warshall algorithm.
+     */
+    static final int BLOCKED_THRESHOLD = 1024;
+
+    /**
+     * The kernel of the inner loops; vectorized when the JDK Vector API is available.
+     */
+    static final MaxMinKernel KERNEL = MaxMinKernel.load();
+
+    /**
+     * The default tile size of the blocked Floyd--Warshall algorithm; three tiles of doubles fit into L2.
+     */
+    static final int TILE_SIZE = 128;
+
     /**
      * Finds the strongest paths between each pair nodes given in adjacency matrix using
      * Floyd--Warshall algorithm, and stores the result into strongestPaths parameter.
+     * Large matrices are processed in tiles, see {@link #strongestPaths(DenseMatrix, DenseMatrix, int)}.
+     */
+    static void strongestPaths(DenseMatrix adjacency, DenseMatrix strongestPaths) {
+        strongestPaths(adjacency, strongestPaths, adjacency.size < BLOCKED_THRESHOLD ? adjacency.size : TILE_SIZE);
+    }
+
+    /**
+     * Finds the strongest paths between each pair nodes given in adjacency matrix using the
+     * blocked Floyd--Warshall algorithm with tiles of given size, and stores the result into
+     * strongestPaths parameter.
+     * <p>
+     * For every diagonal tile, the algorithm first closes the diagonal tile itself, then the
+     * tiles in its row and column, and finally all remaining tiles. Each step only reads tiles
+     * that are already final for the current block of intermediate nodes, so the tiles stay
+     * in cache while they are updated. A tile size of at least n gives the plain algorithm.
+     */
+    static void strongestPaths(DenseMatrix adjacency, DenseMatrix strongestPaths, int tileSize) {
+        strongestPaths(adjacency, strongestPaths, tileSize, KERNEL);
+    }
+
+    /**
+     * The blocked Floyd--Warshall algorithm that runs its inner loops on given kernel.
+     */
+    static void strongestPaths(DenseMatrix adjacency, DenseMatrix strongestPaths, int tileSize, MaxMinKernel kernel) {
+        final int n = adjacency.size;
+        final double[] p = strongestPaths.data;
+        System.arraycopy(adjacency.data, 0, p, 0, n * n);
+        strongestPaths.stale = false;
+
+        for (int k0 = 0; k0 < n; k0 += tileSize) {
+            final int k1 = Math.min(k0 + tileSize, n);
+
+            // phase 1: the diagonal tile
+            relax(kernel, p, n, k0, k1, k0, k1, k0, k1);
+
+            // phase 2: tiles in the same row and column as the diagonal tile
+            for (int b0 = 0; b0 < n; b0 += tileSize) {
+                if (b0 != k0) {
+                    final int b1 = Math.min(b0 + tileSize, n);
+                    relax(kernel, p, n, k0, k1, b0, b1, k0, k1);
+                    relax(kernel, p, n, b0, b1, k0, k1, k0, k1);
+                }
+            }
+
+            // phase 3: all remaining tiles
+            for (int i0 = 0; i0 < n; i0 += tileSize) {
+                if (i0 == k0) {
+                    continue;
+                }
+
+                for (int j0 = 0; j0 < n; j0 += tileSize) {
+                    if (j0 != k0) {
+                        relax(kernel, p, n, i0, Math.min(i0 + tileSize, n), j0, Math.min(j0 + tileSize, n), k0, k1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Matrices of at least this size are closed in parallel by
+     * {@link #parallelStrongestPaths(DenseMatrix, DenseMatrix)}.
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * The tile size of the parallel Floyd--Warshall algorithm; tiles are the units of work.
+     */
+    static final int PARALLEL_TILE_SIZE = 64;
+
+    /**
+     * The pool shared by all parallel computations.
+     */
+    static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+    /**
+     * Finds the strongest paths like {@link #strongestPaths(DenseMatrix, DenseMatrix)}, but
+     * distributes the tiles of the blocked algorithm over the shared pool. Small matrices, or
+     * a pool without parallelism, fall back to the sequential algorithm. Since taking maxima
+     * and minima is exact, the result is identical to the sequential one.
+     */
+    static void parallelStrongestPaths(DenseMatrix adjacency, DenseMatrix strongestPaths) {
+        if (adjacency.size < PARALLEL_THRESHOLD || POOL.getParallelism() < 2) {
+            strongestPaths(adjacency, strongestPaths);
+        } else {
+            parallelStrongestPaths(adjacency, strongestPaths, POOL, PARALLEL_TILE_SIZE);
+        }
+    }
+
+    /**
+     * The blocked Floyd--Warshall algorithm, in which the tiles of the second and the third phase
+     * are relaxed in parallel on given pool.
+     */
+    static void parallelStrongestPaths(DenseMatrix adjacency, DenseMatrix strongestPaths, ForkJoinPool pool, int tileSize) {
+        final int n = adjacency.size;
+        final double[] p = strongestPaths.data;
+        System.arraycopy(adjacency.data, 0, p, 0, n * n);
+        strongestPaths.stale = false;
+
+        final int tiles = (n + tileSize - 1) / tileSize;
+        final ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[tiles * tiles];
+
+        for (int k0 = 0; k0 < n; k0 += tileSize) {
+            final int k1 = Math.min(k0 + tileSize, n);
+            int count;
+
+            // phase 1: the diagonal tile
+            relax(KERNEL, p, n, k0, k1, k0, k1, k0, k1);
+
+            // phase 2: tiles in the same row and column as the diagonal tile
+            count = 0;
+            for (int b0 = 0; b0 < n; b0 += tileSize) {
+                if (b0 != k0) {
+                    tasks[count++] = submitRelax(pool, p, n, k0, b0, tileSize, k0, k1);
+                    tasks[count++] = submitRelax(pool, p, n, b0, k0, tileSize, k0, k1);
+                }
+            }
+            join(tasks, count);
+
+            // phase 3: all remaining tiles
+            count = 0;
+            for (int i0 = 0; i0 < n; i0 += tileSize) {
+                for (int j0 = 0; j0 < n; j0 += tileSize) {
+                    if (i0 != k0 && j0 != k0) {
+                        tasks[count++] = submitRelax(pool, p, n, i0, j0, tileSize, k0, k1);
+                    }
+                }
+            }
+            join(tasks, count);
+        }
+    }
+
+    private static ForkJoinTask<?> submitRelax(ForkJoinPool pool, double[] p, int n, int i0, int j0, int tileSize, int k0, int k1) {
+        return pool.submit(() -> relax(KERNEL, p, n, i0, Math.min(i0 + tileSize, n), j0, Math.min(j0 + tileSize, n), k0, k1));
+    }
+
+    private static void join(ForkJoinTask<?>[] tasks, int count) {
+        for (int t = 0; t < count; t++) {
+            tasks[t].join();
+            tasks[t] = null;
+        }
+    }
+
+    /**
+     * Relaxes the paths from nodes [i0, i1) to nodes [j0, j1) through intermediate nodes [k0, k1).
+     * <p>
+     * Edge values are non-negative and zero denotes a missing edge, so the rows that
+     * do not reach the intermediate node k are skipped.
+     */
+    private static void relax(MaxMinKernel kernel, double[] p, int n, int i0, int i1, int j0, int j1, int k0, int k1) {
+        for (int k = k0; k < k1; k++) {
+            final int rowK = k * n;
+
+            for (int i = i0; i < i1; i++) {
+                final int rowI = i * n;
+                final double ik = p[rowI + k];
+
+                if (ik != 0) {
+                    kernel.relax(p, rowI + j0, rowK + j0, j1 - j0, ik);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the support of every statement source &lt; target: the sum of weights of the reporters r
+     * for which opinions[r][source] &lt; opinions[r][target]. Missing opinions are NaN and support nothing.
+     * <p>
+     * The matrix is computed in row blocks, in parallel on the shared pool for large matrices, and
+     * streams over column tiles within a block. Every element sums the weights in the order of
+     * reporters, so the result does not depend on the blocking.
      */
-    static void strongestPaths(double[][] adjacency, double[][] strongestPaths) {
-        for (int i = 0; i < adjacency.length; i++) {
-            System.arraycopy(adjacency[i], 0, strongestPaths[i], 0, adjacency[0].length);
+    static void support(double[][] opinions, double[] weights, DenseMatrix support) {
+        final int n = support.size;
+        support.fill(0);
+
+        if (n < PARALLEL_THRESHOLD || POOL.getParallelism() < 2) {
+            support(opinions, weights, support.data, n, 0, n);
+        } else {
+            final ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[(n + PARALLEL_TILE_SIZE - 1) / PARALLEL_TILE_SIZE];
+            int count = 0;
+            for (int i0 = 0; i0 < n; i0 += PARALLEL_TILE_SIZE) {
+                final int from = i0, to = Math.min(i0 + PARALLEL_TILE_SIZE, n);
+                tasks[count++] = POOL.submit(() -> support(opinions, weights, support.data, n, from, to));
+            }
+            join(tasks, count);
         }
+    }
 
-        for (int k = 0; k < adjacency.length; k++) {
-            for (int i = 0; i < adjacency.length; i++) {
-                for (int j = 0; j < adjacency.length; j++) {
-                    strongestPaths[i][j] = Math.max(strongestPaths[i][j], Math.min(strongestPaths[i][k], strongestPaths[k][j]));
+    /**
+     * Adds the support of statements with sources [i0, i1) into s.
+     */
+    private static void support(double[][] opinions, double[] weights, double[] s, int n, int i0, int i1) {
+        for (int j0 = 0; j0 < n; j0 += TILE_SIZE) {
+            final int j1 = Math.min(j0 + TILE_SIZE, n);
+
+            for (int r = 0; r < n; r++) {
+                final double weight = weights[r];
+                final double[] opinion = opinions[r];
+
+                if (weight == 0) {
+                    continue;
+                }
+
+                for (int i = i0; i < i1; i++) {
+                    final double source = opinion[i];
+                    final int rowI = i * n;
+
+                    // NaN is not smaller than anything
+                    for (int j = j0; j < j1; j++) {
+                        if (source < opinion[j]) {
+                            s[rowI + j] += weight;
+                        }
+                    }
                 }
             }
         }
@@ -23,14 +247,71 @@ public class Matrices {
      * Computes transitive closure over given adjacency matrix and stores the result into closure parameter.
      */
     static void closure(boolean[][] adjacency, boolean[][] closure) {
-        for (int i = 0; i < adjacency.length; i++) {
-            System.arraycopy(adjacency[i], 0, closure[i], 0, adjacency[0].length);
+        final long[][] packed = new long[adjacency.length][Bits.words(adjacency.length)];
+        closure(Bits.pack(adjacency), packed);
+        Bits.unpack(packed, closure);
+    }
+
+    /**
+     * Computes transitive closure over given adjacency matrix, whose rows are packed into 64-bit words,
+     * and stores the result into closure parameter. Whenever node i reaches node k, the row of k is
+     * OR-ed into the row of i a word at a time, which takes O(n^3 / 64).
+     */
+    static void closure(long[][] adjacency, long[][] closure) {
+        closure(adjacency, closure, adjacency.length);
+    }
+
+    /**
+     * Computes transitive closure over the top-left size x size corner of given packed adjacency matrix,
+     * whose remaining rows and columns are empty.
+     */
+    static void closure(long[][] adjacency, long[][] closure, int size) {
+        final int words = Bits.words(size);
+
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(adjacency[i], 0, closure[i], 0, words);
         }
 
-        for (int k = 0; k < adjacency.length; k++) {
-            for (int i = 0; i < adjacency.length; i++) {
-                for (int j = 0; j < adjacency.length; j++) {
-                    closure[i][j] = closure[i][j] || (closure[i][k] && closure[k][j]);
+        for (int k = 0; k < size; k++) {
+            final long[] rowK = closure[k];
+            final int word = k >>> 6;
+            final long mask = 1L << k;
+
+            for (int i = 0; i < size; i++) {
+                final long[] rowI = closure[i];
+
+                if ((rowI[word] & mask) != 0) {
+                    for (int w = 0; w < words; w++) {
+                        rowI[w] |= rowK[w];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes transitive closure as {@link #closure(long[][], long[][], int)} over matrices stored in
+     * buffers, where the word w of row i is at index i * words + w.
+     */
+    static void closure(LongBuffer adjacency, LongBuffer closure, int words, int size) {
+        final int used = Bits.words(size);
+
+        for (int i = 0; i < size * words; i++) {
+            closure.put(i, adjacency.get(i));
+        }
+
+        for (int k = 0; k < size; k++) {
+            final int rowK = k * words;
+            final int word = k >>> 6;
+            final long mask = 1L << k;
+
+            for (int i = 0; i < size; i++) {
+                final int rowI = i * words;
+
+                if ((closure.get(rowI + word) & mask) != 0) {
+                    for (int w = 0; w < used; w++) {
+                        closure.put(rowI + w, closure.get(rowI + w) | closure.get(rowK + w));
+                    }
                 }
             }
         }
@@ -39,54 +320,527 @@ public class Matrices {
     /**
      * Expands given adjacency matrix with edge between source and target of value val.
      * Dynamically updates the corresponding (strongest) paths matrix.
+     * <p>
+     * If the edge already exists with a larger value, it is overwritten with val, but the paths are
+     * left as they were, and marked {@link DenseMatrix#stale}: they may be stronger than the graph
+     * now allows. The models revise their KBs with such paths, so the next contraction or removal
+     * computes them from scratch instead of repairing them.
      */
-    static void expand(double[][] adjacency, int source, int target, double val, double[][] paths) {
-        if (paths[target][source] > 0) {
+    static void expand(DenseMatrix adjacency, int source, int target, double val, DenseMatrix paths) {
+        final int n = paths.size;
+        final double[] p = paths.data;
+
+        if (p[target * n + source] > 0) {
             // abort expansion; the KB supports the contrary statement
             throw new Error(
                     String.format("Aborted expansion [%d < %d, %.2f], because existing KB contains [%d < %d, %.2f]",
-                    source, target, val, target, source, paths[target][source]));
+                    source, target, val, target, source, p[target * n + source]));
         }
 
-        adjacency[source][target] = val;
+        if (adjacency.data[source * n + target] > val) {
+            adjacency.data[source * n + target] = val;
+            paths.stale = true;
+            return;
+        }
 
-        for (int i = 0; i < paths.length; i++) {
-            for (int j = 0; j < paths.length; j++) {
-                if ((paths[i][source] > 0 || i == source) && (paths[target][j] > 0 || target == j)) {
-                    if (i == source && j == target) {
-                        paths[source][target] = Math.max(val, paths[source][target]);
-                    } else if (i != source && target == j) {
-                        paths[i][target] = Math.max(paths[i][target], Math.min(paths[i][source], Math.max(val, paths[source][target])));
-                    } else if (i == source && target != j) {
-                        paths[source][j] = Math.max(paths[source][j], Math.min(Math.max(val, paths[source][target]), paths[target][j]));
-                    } else {
-                        paths[i][j] = Math.max(paths[i][j], Math.min(paths[i][source], Math.min(Math.max(val, paths[source][target]), paths[target][j])));
+        adjacency.data[source * n + target] = val;
+        insert(paths, source, target, val);
+    }
+
+    /**
+     * Updates the strongest paths after an edge between source and target of value val has been
+     * added. The best path through the new edge uses it once, so it is the strongest path to source,
+     * the edge, and the strongest path from target; the rows of the nodes that reach source are
+     * relaxed with the row of target, which itself does not change.
+     */
+    private static void insert(DenseMatrix paths, int source, int target, double val) {
+        final int n = paths.size;
+        final double[] p = paths.data;
+
+        // the strength of the new edge, or of the existing path from source to target
+        final double edge = Math.max(val, p[source * n + target]);
+        final int rowTarget = target * n;
+
+        // only the paths from predecessors of source to successors of target can change
+        final int[] successors = new int[n];
+        int count = 0;
+        for (int j = 0; j < n; j++) {
+            if (p[rowTarget + j] > 0 || j == target) {
+                successors[count++] = j;
+            }
+        }
+
+        // when most nodes are successors, whole rows are cheaper to relax
+        final boolean dense = count > n / 4;
+
+        for (int i = 0; i < n; i++) {
+            final int rowI = i * n;
+
+            if (p[rowI + source] == 0 && i != source) {
+                continue;
+            }
+
+            // the strongest path from i to target that goes through the new edge
+            final double it = i == source ? edge : Math.min(p[rowI + source], edge);
+
+            if (dense) {
+                KERNEL.relax(p, rowI, rowTarget, n, it);
+                p[rowI + target] = Math.max(p[rowI + target], it);
+            } else {
+                for (int t = 0; t < count; t++) {
+                    final int j = successors[t];
+                    final double through = j == target ? it : Math.min(it, p[rowTarget + j]);
+
+                    if (through > p[rowI + j]) {
+                        p[rowI + j] = through;
                     }
                 }
             }
         }
     }
 
+    /**
+     * The maximal number of distinct nodes in the statements of a single batch expansion.
+     */
+    static final int BATCH_NODES = 64;
+
+    /**
+     * Buffers of the dynamic updates, which are reused by the following calls on the same thread.
+     */
+    private static final class Scratch {
+        // the nodes of a batch, their indices in it (-1 for other nodes), the strongest edges of the batch
+        // between them, and the scratch space of contradicts(); cleared after every batch
+        final int[] nodes = new int[BATCH_NODES];
+        final double[] edges = new double[BATCH_NODES * BATCH_NODES];
+        final double[] strength = new double[BATCH_NODES];
+        final boolean[] settled = new boolean[BATCH_NODES];
+        int[] local = new int[0];
+
+        // weakening: the affected paths, in rows of n, and the buffers of affectedPaths() and repairRow();
+        // affected and isHead are cleared after every use
+        boolean[] affected = new boolean[0];
+        boolean[] isHead = new boolean[0];
+        int[] heads = new int[0];
+        double[] reach = new double[0];
+        int[] targets = new int[0];
+
+        int[] local(int n) {
+            if (local.length < n) {
+                local = new int[Math.max(n, 2 * local.length)];
+                Arrays.fill(local, -1);
+            }
+            return local;
+        }
+
+        void ensureWeakening(int n) {
+            if (isHead.length < n) {
+                isHead = new boolean[n];
+                heads = new int[n];
+                reach = new double[n];
+                targets = new int[n];
+            }
+            if (affected.length < n * n) {
+                affected = new boolean[n * n];
+            }
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Expands given adjacency matrix with a run of statements [from, to), where the i-th statement
+     * is an edge between sources[i] and targets[i] of value values[i]. The run stops at the first
+     * statement that contradicts the paths, which includes the edges of preceding statements in the
+     * run, or that would weaken an existing edge. Such statement needs a revision or the single
+     * {@link #expand(DenseMatrix, int, int, double, DenseMatrix)}, so the caller has to handle it.
+     * The run also stops once its statements touch {@link #BATCH_NODES} distinct nodes.
+     * <p>
+     * The strongest paths are repaired once for the whole run: by relaxing all paths through the
+     * nodes of the run, or, for short runs, by inserting edges one by one. The result is identical to
+     * expanding the statements one at a time.
+     *
+     * @return the index of the first statement that was not expanded
+     */
+    static int expand(DenseMatrix adjacency, int[] sources, int[] targets, double[] values, int from, int to,
+                      DenseMatrix paths) {
+        final int n = paths.size;
+        final double[] a = adjacency.data;
+        final double[] p = paths.data;
+
+        // the nodes of the run, and the strongest edges of the run between them
+        final Scratch scratch = SCRATCH.get();
+        final int[] nodes = scratch.nodes;
+        final int[] local = scratch.local(n);
+        final double[] edges = scratch.edges;
+        int count = 0;
+
+        int next = from;
+        for (; next < to; next++) {
+            final int source = sources[next], target = targets[next];
+            final double val = values[next];
+
+            if (a[source * n + target] > val) {
+                break;
+            }
+
+            final int missing = (local[source] < 0 ? 1 : 0) + (local[target] < 0 ? 1 : 0);
+            if (count + missing > BATCH_NODES) {
+                break;
+            }
+
+            if (contradicts(p, n, target, source, nodes, local, edges, count, scratch.strength, scratch.settled)) {
+                break;
+            }
+
+            if (local[source] < 0) {
+                local[source] = count;
+                nodes[count++] = source;
+            }
+            if (local[target] < 0) {
+                local[target] = count;
+                nodes[count++] = target;
+            }
+
+            a[source * n + target] = val;
+            final int e = local[source] * BATCH_NODES + local[target];
+            edges[e] = Math.max(edges[e], val);
+        }
+
+        // leave the scratch space clear for the next run
+        for (int c = 0; c < count; c++) {
+            local[nodes[c]] = -1;
+            Arrays.fill(edges, c * BATCH_NODES, c * BATCH_NODES + count, 0);
+        }
+
+        final int expanded = next - from;
+
+        if (expanded <= count) {
+            // short runs: insert edges one by one
+            for (int i = from; i < next; i++) {
+                insert(paths, sources[i], targets[i], values[i]);
+            }
+        } else {
+            // long runs: relax all paths through the nodes of the run
+            for (int i = from; i < next; i++) {
+                final int st = sources[i] * n + targets[i];
+                p[st] = Math.max(p[st], values[i]);
+            }
+
+            for (int c = 0; c < count; c++) {
+                final int k = nodes[c];
+                relax(KERNEL, p, n, 0, n, 0, n, k, k + 1);
+            }
+        }
+
+        return next;
+    }
+
+    /**
+     * Tells whether there is a path from node x to node y in the graph whose strongest paths are
+     * given in p, after the edges of a batch between given nodes have been added to it.
+     * <p>
+     * Such path alternates between the existing strongest paths and the new edges. It is found
+     * with Dijkstra's algorithm over the nodes of the batch, in O(count^2).
+     */
+    private static boolean contradicts(double[] p, int n, int x, int y, int[] nodes, int[] local, double[] edges,
+                                       int count, double[] strength, boolean[] settled) {
+        if (p[x * n + y] > 0) {
+            return true;
+        }
+
+        // the strongest paths from x to nodes of the batch
+        for (int c = 0; c < count; c++) {
+            strength[c] = nodes[c] == x ? Double.POSITIVE_INFINITY : p[x * n + nodes[c]];
+            settled[c] = false;
+        }
+
+        for (int round = 0; round < count; round++) {
+            int best = -1;
+            for (int c = 0; c < count; c++) {
+                if (!settled[c] && (best < 0 || strength[c] > strength[best])) {
+                    best = c;
+                }
+            }
+
+            if (strength[best] == 0) {
+                break;
+            }
+
+            settled[best] = true;
+            final int u = nodes[best];
+
+            if (u == y || p[u * n + y] > 0) {
+                return true;
+            }
+
+            // continue along a new edge, or along an existing path
+            for (int c = 0; c < count; c++) {
+                if (!settled[c]) {
+                    final double hop = Math.max(edges[best * BATCH_NODES + c], p[u * n + nodes[c]]);
+                    strength[c] = Math.max(strength[c], Math.min(strength[best], hop));
+                }
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Removes all paths from from source to target. The adjacency and the strongest paths matrices are dynamically updated.
+     * Exact paths are repaired where the removed edges affected them; stale paths are computed from scratch.
      */
-    static void contract(double[][] adjacency, int source, int target, double[][] strongestPaths) {
-        final double support = strongestPaths[source][target];
+    static void contract(DenseMatrix adjacency, int source, int target, DenseMatrix strongestPaths) {
+        final int n = strongestPaths.size;
+        final double[] a = adjacency.data;
+        final double[] p = strongestPaths.data;
+        final double support = p[source * n + target];
+
+        // removed edges, stored as i * n + j, and their former values
+        int removed = 0;
+        int[] edges = new int[16];
+        double[] values = new double[16];
 
-        for (int i = 0; i < strongestPaths.length; i++) {
-            for (int j = 0; j < strongestPaths.length; j++) {
-                if (support >= adjacency[i][j]
-                        && adjacency[i][j] > 0
-                        && (strongestPaths[source][i] >= adjacency[i][j] || source == i)
-                        && (strongestPaths[j][target] >= adjacency[i][j] || target == j)) {
-                    adjacency[i][j] = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                final int ij = i * n + j;
+
+                if (support >= a[ij]
+                        && a[ij] > 0
+                        && (p[source * n + i] >= a[ij] || source == i)
+                        && (p[j * n + target] >= a[ij] || target == j)) {
+                    if (removed == edges.length) {
+                        edges = Arrays.copyOf(edges, 2 * removed);
+                        values = Arrays.copyOf(values, 2 * removed);
+                    }
+
+                    edges[removed] = ij;
+                    values[removed] = a[ij];
+                    removed++;
+
+                    a[ij] = 0;
                 }
             }
         }
 
-        // The strongest paths are updated naively by rerunning the strongestPaths procedure in O(n^3)
-        // It should be done dynamically in O(n^2). Not sure how to implement it just yet.
-        strongestPaths(adjacency, strongestPaths);
+        if (removed > 0 || strongestPaths.stale) {
+            weaken(adjacency, strongestPaths, edges, values, removed);
+        }
+    }
+
+    /**
+     * Removes the given edges, stored as i * n + j, from the adjacency matrix and repairs the
+     * strongest paths that went through them.
+     */
+    static void remove(DenseMatrix adjacency, int[] edges, int count, DenseMatrix strongestPaths) {
+        final double[] a = adjacency.data;
+        final int[] removed = new int[count];
+        final double[] values = new double[count];
+        int total = 0;
+
+        for (int e = 0; e < count; e++) {
+            if (a[edges[e]] > 0) {
+                removed[total] = edges[e];
+                values[total++] = a[edges[e]];
+                a[edges[e]] = 0;
+            }
+        }
+
+        if (total > 0) {
+            weaken(adjacency, strongestPaths, removed, values, total);
+        }
+    }
+
+    /**
+     * Sets the given edges, stored as i * n + j, to new values, and updates the strongest paths. Unlike
+     * {@link #expand(DenseMatrix, int, int, double, DenseMatrix)}, the graph may have cycles, as the
+     * preferences of the Schulze method do. Weakened edges are repaired first, then strengthened edges
+     * are inserted one at a time.
+     */
+    static void update(DenseMatrix adjacency, int[] edges, double[] values, int count, DenseMatrix strongestPaths) {
+        final int n = adjacency.size;
+        final double[] a = adjacency.data;
+        final int[] weakened = new int[count];
+        final double[] former = new double[count];
+        int total = 0;
+
+        for (int e = 0; e < count; e++) {
+            if (values[e] < a[edges[e]]) {
+                weakened[total] = edges[e];
+                former[total++] = a[edges[e]];
+                a[edges[e]] = values[e];
+            }
+        }
+
+        if (total > 0) {
+            weaken(adjacency, strongestPaths, weakened, former, total);
+        }
+
+        for (int e = 0; e < count; e++) {
+            if (values[e] > a[edges[e]]) {
+                a[edges[e]] = values[e];
+                insert(strongestPaths, edges[e] / n, edges[e] % n, values[e]);
+            }
+        }
+    }
+
+    /**
+     * Updates the strongest paths after the given edges, stored as i * n + j, have been weakened
+     * (or removed) in the adjacency matrix. Their former values are given in the values parameter.
+     * Only paths that are not stale are repaired; stale ones are computed from scratch.
+     */
+    private static void weaken(DenseMatrix adjacency, DenseMatrix paths, int[] edges, double[] values, int count) {
+        if (paths.stale) {
+            strongestPaths(adjacency, paths);
+            return;
+        }
+
+        final Scratch scratch = SCRATCH.get();
+        scratch.ensureWeakening(paths.size);
+        affectedPaths(paths, edges, values, count, scratch);
+
+        for (int i = 0; i < paths.size; i++) {
+            repairRow(adjacency, paths, i, scratch.affected, scratch.targets);
+        }
+    }
+
+    /**
+     * Finds the pairs (i, j) whose strongest path may have gone through one of the weakened edges. A
+     * weakened edge (u, v) lies on a strongest path from i to j, if min(paths[i][u], value, paths[v][j])
+     * is not weaker than paths[i][j], where value is its former value. All other pairs keep their strength,
+     * since they have a strongest path that avoids the weakened edges.
+     * <p>
+     * The paths matrix must still contain the strongest paths from before the edges were weakened.
+     * The pair (i, j) is marked in scratch.affected[i * n + j], which must be clear.
+     */
+    private static void affectedPaths(DenseMatrix paths, int[] edges, double[] values, int count, Scratch scratch) {
+        final int n = paths.size;
+        final double[] p = paths.data;
+        final boolean[] affected = scratch.affected;
+
+        // distinct heads of weakened edges
+        final boolean[] isHead = scratch.isHead;
+        final int[] heads = scratch.heads;
+        int headCount = 0;
+        for (int e = 0; e < count; e++) {
+            final int v = edges[e] % n;
+            if (!isHead[v]) {
+                isHead[v] = true;
+                heads[headCount++] = v;
+            }
+        }
+
+        for (int h = 0; h < headCount; h++) {
+            isHead[heads[h]] = false;
+        }
+
+        // reach[v]: the strongest path from i that ends with a weakened edge into v
+        final double[] reach = scratch.reach;
+
+        for (int i = 0; i < n; i++) {
+            final int rowI = i * n;
+            boolean reachable = false;
+
+            for (int h = 0; h < headCount; h++) {
+                reach[heads[h]] = 0;
+            }
+
+            for (int e = 0; e < count; e++) {
+                final int u = edges[e] / n, v = edges[e] % n;
+                final double strength = i == u ? values[e] : Math.min(p[rowI + u], values[e]);
+
+                if (strength > reach[v]) {
+                    reach[v] = strength;
+                    reachable = true;
+                }
+            }
+
+            if (!reachable) {
+                continue;
+            }
+
+            for (int h = 0; h < headCount; h++) {
+                final int v = heads[h];
+                final int rowV = v * n;
+
+                if (reach[v] == 0) {
+                    continue;
+                }
+
+                for (int j = 0; j < n; j++) {
+                    if (p[rowI + j] > 0 && (v == j ? reach[v] : Math.min(reach[v], p[rowV + j])) >= p[rowI + j]) {
+                        affected[rowI + j] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the strongest paths from node i to all affected targets. Strengths of the unaffected
+     * targets are exact, so they seed the affected ones, which are then settled in the order of decreasing
+     * strength like in Dijkstra's algorithm. Runs in O(n * |affected|).
+     * <p>
+     * The affected targets are read from affected[i * n + j], which is cleared, and collected in targets.
+     */
+    private static void repairRow(DenseMatrix adjacency, DenseMatrix paths, int i, boolean[] affected, int[] targets) {
+        final int n = paths.size;
+        final double[] a = adjacency.data;
+        final double[] p = paths.data;
+        final int rowI = i * n;
+
+        int count = 0;
+        for (int j = 0; j < n; j++) {
+            if (affected[rowI + j]) {
+                targets[count++] = j;
+                p[rowI + j] = a[rowI + j];
+            }
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        // paths that reach an affected target through an unaffected node
+        for (int k = 0; k < n; k++) {
+            final double ik = p[rowI + k];
+
+            if (affected[rowI + k] || ik == 0) {
+                continue;
+            }
+
+            for (int t = 0; t < count; t++) {
+                final int j = targets[t];
+                p[rowI + j] = Math.max(p[rowI + j], Math.min(ik, a[k * n + j]));
+            }
+        }
+
+        // paths that go through other affected nodes
+        for (int settled = 0; settled < count; settled++) {
+            int best = settled;
+            for (int t = settled + 1; t < count; t++) {
+                if (p[rowI + targets[t]] > p[rowI + targets[best]]) {
+                    best = t;
+                }
+            }
+
+            final int k = targets[best];
+            targets[best] = targets[settled];
+            targets[settled] = k;
+
+            final double ik = p[rowI + k];
+            if (ik == 0) {
+                break;
+            }
+
+            for (int t = settled + 1; t < count; t++) {
+                final int j = targets[t];
+                p[rowI + j] = Math.max(p[rowI + j], Math.min(ik, a[k * n + j]));
+            }
+        }
+
+        for (int t = 0; t < count; t++) {
+            affected[rowI + targets[t]] = false;
+        }
     }
 
     static String printMatrix(double[][] matrix) {
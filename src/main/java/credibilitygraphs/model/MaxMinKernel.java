@@ -0,0 +1,29 @@
+package credibilitygraphs.model;
+
+/**
+ * The inner loop of the strongest paths computations. It relaxes a segment of row i
+ * through node k: row[j] = max(row[j], min(ik, rowK[j])).
+ * <p>
+ * The kernel is chosen once at startup: if the JDK Vector API is present, the kernel uses
+ * vector lanes, otherwise it falls back to the scalar loop.
+ */
+interface MaxMinKernel {
+    /**
+     * Relaxes length elements of a matrix, stored in array p, that start at offsetI with the
+     * elements that start at offsetK, through an intermediate strength ik.
+     */
+    void relax(double[] p, int offsetI, int offsetK, int length, double ik);
+
+    /**
+     * Returns the vectorized kernel when the Vector API is available, and the scalar one otherwise.
+     */
+    static MaxMinKernel load() {
+        try {
+            return (MaxMinKernel) Class.forName("credibilitygraphs.model.VectorMaxMinKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarMaxMinKernel();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package credibilitygraphs.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Groups reporters whose opinions order agents identically.
+ * <p>
+ * Models only compare the opinions of a reporter with each other, so opinions are first replaced by
+ * their ranks, which keeps every comparison. Reporters with equal ranks then make exactly the same
+ * comparisons, and whatever depends on them is computed once for each group.
+ */
+final class OrderGroups {
+    // the first reporter with the same opinions as every reporter
+    int[] representatives = new int[0];
+
+    // the number of distinct orders
+    int distinct = 0;
+
+    // scratch space for ranking opinions
+    private int[] indices = new int[0];
+    private int[] buffer = new int[0];
+
+    // hashes of opinions, mapped to the last representative with them, and a chain through
+    // the representatives with the same hash
+    private final Map<Integer, Integer> heads = new HashMap<>();
+    private int[] next = new int[0];
+
+    /**
+     * Replaces the first length opinions by their ranks among them: 0 for the smallest opinions,
+     * 1 for the next larger, and so on. Missing opinions (NaN) are kept.
+     */
+    void canonicalize(double[] opinions, int length) {
+        if (indices.length < length) {
+            indices = new int[length];
+            buffer = new int[length];
+        }
+
+        for (int i = 0; i < length; i++) {
+            indices[i] = i;
+        }
+        Sorting.sort(indices, length, opinions, buffer);
+
+        // NaN sorts last; -0.0 sorts before 0.0, but they are not smaller than each other
+        double rank = -1, previous = 0;
+        for (int i = 0; i < length; i++) {
+            final int agent = indices[i];
+            final double opinion = opinions[agent];
+
+            if (Double.isNaN(opinion)) {
+                break;
+            }
+            if (i == 0 || previous < opinion) {
+                rank++;
+            }
+
+            previous = opinion;
+            opinions[agent] = rank;
+        }
+    }
+
+    /**
+     * Groups the first count reporters by the first length opinions in their rows, which should be
+     * canonical; see {@link #canonicalize(double[], int)}.
+     */
+    void group(double[][] opinions, int count, int length) {
+        if (representatives.length < count) {
+            representatives = new int[count];
+            next = new int[count];
+        }
+
+        heads.clear();
+        distinct = 0;
+
+        for (int reporter = 0; reporter < count; reporter++) {
+            final double[] row = opinions[reporter];
+
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + Double.hashCode(row[i]);
+            }
+
+            final Integer head = heads.get(hash);
+            int candidate = head == null ? -1 : head;
+            while (candidate >= 0 && !equal(opinions[candidate], row, length)) {
+                candidate = next[candidate];
+            }
+
+            if (candidate >= 0) {
+                representatives[reporter] = candidate;
+            } else {
+                representatives[reporter] = reporter;
+                next[reporter] = head == null ? -1 : head;
+                heads.put(hash, reporter);
+                distinct++;
+            }
+        }
+    }
+
+    /**
+     * Whether the first length opinions of both rows are equal, where missing opinions equal each other.
+     */
+    static boolean equal(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (Double.doubleToLongBits(a[i]) != Double.doubleToLongBits(b[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -8,104 +8,261 @@ import java.util.*;
 
 
 public class Orders extends AbstractTrustModel<PairwiseOrder> {
-    // the "starting number" of false opinions
-    // prevents new reporters from having too much influence
-    private static final double TRUTH_OFFSET = 5.0;
-
-    // opinions
-    private boolean[][][] opPairwise = new boolean[0][0][0];
-    private boolean[][][] opClosures = new boolean[0][0][0];
-    private double[][] rcvOpinions = new double[0][0];
+    // the relative change of an experience or a support below which a warm-started
+    // revision keeps the value from the previous ticks
+    static final double WARM_START_TOLERANCE = 0.05;
+
+    // opinions, experiences and statement support; possibly shared with other models
+    private final OrdersState state;
+
+    // the order in which statements revise the KB
+    private final StatementOrder order;
+
+    private final String name;
+
+    // statements of the current tick, and scratch space for sorting them; statements are cells
+    // source * agents + target, which fit into an int, since agents are at most DenseMatrix.MAX_SIZE
+    private int[] stCells = new int[0];
+    private int[] stBuffer = new int[0];
+
+    // the sorted statements of the current tick, as edges for batch expansion
+    private int[] stSources = new int[0];
+    private int[] stTargets = new int[0];
+    private double[] stSupports = new double[0];
+
+    // warm start: the number of ticks between full revisions, or 0 to always revise from scratch
+    private final int rebuildInterval;
+    private int sinceRebuild = 0;
+
+    // the revised KB from the previous tick, the experiences and supports it was revised with,
+    // the version of agents it was revised for, and the tick it was last revised in
+    private DenseMatrix kbAdjacency = null;
+    private DenseMatrix kbPaths = null;
+    private DenseMatrix kbExperiences = null;
+    private DenseMatrix kbSupport = null;
+    private int kbVersion = 0;
+    private int kbTime = 0;
+
+    // the orders computed in the current tick; cleared whenever the model receives new data
+    private Map<Integer, PairwiseOrder> trust = null;
+
+    public Orders() {
+        this(0);
+    }
 
-    // experiences
-    private double[][] xpPairwise = new double[0][0];
-    private double[][] xpClosure = new double[0][0];
+    /**
+     * Creates the model with warm-started revision, if rebuildInterval is positive. Each tick then
+     * starts from the KB of the previous tick and only revises it with the experiences and statements
+     * whose values changed by more than {@link #WARM_START_TOLERANCE}: their edges are removed and
+     * inserted again. Experiences of agents without new experiences only decay, all at the same rate,
+     * so an experience that changed by no more than that decay keeps its edge. Every rebuildInterval
+     * ticks, whenever agents change, and whenever more than an eighth of all experiences and statements
+     * changed, so that inserting them again would cost more than revising from scratch, the KB is
+     * revised from scratch, which bounds the drift from the full revision.
+     *
+     * @param rebuildInterval the number of ticks between full revisions, or 0 to always revise from scratch
+     */
+    public Orders(int rebuildInterval) {
+        this(new OrdersState(false), StatementOrder.DESCENDING, rebuildInterval, "Credibility Dynamics");
+    }
 
-    // local history
-    private Past[] local = new Past[0];
+    Orders(OrdersState state, StatementOrder order, int rebuildInterval, String name) {
+        this.state = state;
+        this.order = order;
+        this.rebuildInterval = rebuildInterval;
+        this.name = name;
+    }
 
     static class Past {
         // time decay factor
-        private static final double TF = 0.1;
+        static final double TF = 0.1;
 
-        // the length of history
-        private static final int HISTORY_LENGTH = 10;
+        // the default length of history
+        static final int HISTORY_LENGTH = 10;
 
         // list of experiences
-        final Experience[] experiences = new Experience[HISTORY_LENGTH];
+        final Experience[] experiences;
 
         // timestamps of when the agent was right
-        final int[] wrongs = new int[HISTORY_LENGTH];
+        final int[] wrongs;
 
         // timestamps of when the agent was wrong
-        final int[] rights = new int[HISTORY_LENGTH];
+        final int[] rights;
+
+        // whether only the events in the arrays above are considered
+        private final boolean bounded;
+
+        // sums of events decayed to the reference time. A bounded history sums its arrays again
+        // whenever the time or the events change, which takes O(history length) and gives the
+        // same values as summing them on every query. An unbounded history keeps running sums
+        // instead, which are rescaled when time advances, and may differ from exact sums in the
+        // last bits.
+        private boolean valid = false;
+        private int reference;
+        private double outcomes, weights, rightWeights, wrongWeights;
+
+        Past() {
+            this(HISTORY_LENGTH);
+        }
+
+        /**
+         * @param historyLength the number of the most recent events of each kind that are considered,
+         *                      or 0 to consider all of them
+         */
+        Past(int historyLength) {
+            bounded = historyLength > 0;
+            experiences = new Experience[historyLength];
+            wrongs = new int[historyLength];
+            rights = new int[historyLength];
+        }
 
         void addExperience(Experience element) {
-            System.arraycopy(experiences, 0, experiences, 1, experiences.length - 1);
-            experiences[0] = element;
+            if (bounded) {
+                System.arraycopy(experiences, 0, experiences, 1, experiences.length - 1);
+                experiences[0] = element;
+                valid = false;
+            } else {
+                advance(element.time);
+                final double w = decay(element.time);
+                outcomes += w * element.outcome;
+                weights += w;
+            }
         }
 
         void addRight(int time) {
-            System.arraycopy(rights, 0, rights, 1, rights.length - 1);
-            rights[0] = time;
+            final double change = add(rights, time);
+            rightWeights += change;
         }
 
         void addWrong(int time) {
-            System.arraycopy(wrongs, 0, wrongs, 1, wrongs.length - 1);
-            wrongs[0] = time;
+            final double change = add(wrongs, time);
+            wrongWeights += change;
         }
 
-        double[] weightedExperience(int currentTime) {
-            double sum = 0, weights = 0;
-            for (Experience e : experiences) {
-                if (e == null) {
-                    break;
-                } else {
-                    final double w = Math.exp(-TF * (currentTime - e.time));
-                    sum += w * e.outcome;
-                    weights += w;
-                }
+        /**
+         * Stores given timestamp and returns the change of the running sum of the timestamps, which is
+         * 0 for a bounded history. Timestamp 0 marks an empty slot, which ends a bounded history,
+         * so it masks older timestamps; an unbounded history does not count it.
+         */
+        private double add(int[] data, int time) {
+            if (bounded) {
+                System.arraycopy(data, 0, data, 1, data.length - 1);
+                data[0] = time;
+                valid = false;
+                return 0;
             }
 
+            advance(time);
+            return time == 0 ? 0 : decay(time);
+        }
+
+        double[] weightedExperience(int currentTime) {
+            advance(currentTime);
+
             if (weights == 0) {
                 return new double[]{0, 0};
             } else {
-                return new double[]{sum / weights, weights};
+                return new double[]{outcomes / weights, weights};
             }
         }
 
+        /**
+         * The decayed average of experiences, or 0 if there are none.
+         */
+        double experienceAverage(int currentTime) {
+            advance(currentTime);
+            return weights == 0 ? 0 : outcomes / weights;
+        }
+
+        /**
+         * The sum of decay weights of experiences.
+         */
+        double experienceWeight(int currentTime) {
+            advance(currentTime);
+            return weights;
+        }
+
         double weightedRights(int currentTime) {
-            return weighted(currentTime, rights);
+            advance(currentTime);
+            return rightWeights;
         }
 
         double weightedWrongs(int currentTime) {
-            return weighted(currentTime, wrongs);
+            advance(currentTime);
+            return wrongWeights;
+        }
+
+        /**
+         * Moves the reference time of the sums to given time.
+         */
+        private void advance(int time) {
+            if (bounded) {
+                if (!valid || time != reference) {
+                    sum(time);
+                }
+            } else if (!valid) {
+                valid = true;
+                reference = time;
+            } else if (time != reference) {
+                final double factor = Math.exp(-TF * (time - reference));
+                outcomes *= factor;
+                weights *= factor;
+                rightWeights *= factor;
+                wrongWeights *= factor;
+                reference = time;
+            }
         }
 
-        private double weighted(int currentTime, int[] data) {
-            double sum = 0;
-            for (int time : data) {
-                if (time == 0) {
+        /**
+         * Sums the events in the arrays, up to the first empty slot, decayed to given time.
+         */
+        private void sum(int time) {
+            valid = true;
+            reference = time;
+            outcomes = weights = rightWeights = wrongWeights = 0;
+
+            for (Experience e : experiences) {
+                if (e == null) {
                     break;
-                } else {
-                    sum += Math.exp(-TF * (currentTime - time));
                 }
+                final double w = decay(e.time);
+                outcomes += w * e.outcome;
+                weights += w;
             }
 
-            return sum;
+            for (int right : rights) {
+                if (right == 0) {
+                    break;
+                }
+                rightWeights += decay(right);
+            }
+
+            for (int wrong : wrongs) {
+                if (wrong == 0) {
+                    break;
+                }
+                wrongWeights += decay(wrong);
+            }
         }
-    }
 
-    private int time = 0;
+        /**
+         * The weight of an event at given time, decayed to the reference time.
+         */
+        private double decay(int time) {
+            return Math.exp(-TF * (reference - time));
+        }
+    }
 
     @Override
     public void initialize(Object... objects) {
-        time = 0;
+        state.initialize();
+        trust = null;
     }
 
     @Override
     public void setCurrentTime(int i) {
-        time = i;
+        state.setCurrentTime(i);
+        trust = null;
     }
 
     @Override
@@ -118,155 +275,116 @@ public class Orders extends AbstractTrustModel<PairwiseOrder> {
 
     @Override
     public void processExperiences(List<Experience> list) {
-        for (Experience e : list) {
-            local[e.agent].addExperience(e);
-        }
-
-        // clear all pairwise experience comparisons
-        for (int agent1 = 0; agent1 < xpPairwise.length; agent1++) {
-            for (int agent2 = 0; agent2 < xpPairwise.length; agent2++) {
-                xpPairwise[agent1][agent2] = 0;
-            }
-        }
-
-        // fill the array of pairwise experience comparisons
-        for (int agent1 = 0; agent1 < xpPairwise.length; agent1++) {
-            for (int agent2 = 0; agent2 < xpPairwise.length; agent2++) {
-                final double[] experiences1 = local[agent1].weightedExperience(time);
-                final double[] experiences2 = local[agent2].weightedExperience(time);
-
-                if (experiences1[0] < experiences2[0]) {
-                    xpPairwise[agent1][agent2] = Math.min(experiences1[1], experiences2[1]);
-                }
-            }
-        }
-
-        // compute closure over pairwise experience comparisons
-        Matrices.strongestPaths(xpPairwise, xpClosure);
-
-        // updating past accuracy
-        for (Experience e : list) {
-            for (int reporter = 0; reporter < opClosures.length; reporter++) {
-                int right = 0, wrong = 0;
-
-                for (int agent = 0; agent < opClosures.length; agent++) {
-                    if (xpClosure[agent][e.agent] > 0) {
-                        if (opClosures[reporter][agent][e.agent]) {
-                            right++;
-                        } else if (opClosures[reporter][e.agent][agent]) {
-                            wrong++;
-                        }
-                    }
-                }
-
-                if (right > wrong) {
-                    local[reporter].addRight(time);
-                } else if (wrong > right) {
-                    local[reporter].addWrong(time);
-                }
-            }
-        }
+        state.processExperiences(list);
+        trust = null;
     }
 
     @Override
     public void processOpinions(List<Opinion> list) {
-        // clear all absolute opinions from previous ticks
-        for (int i = 0; i < rcvOpinions.length; i++) {
-            for (int j = 0; j < rcvOpinions.length; j++) {
-                rcvOpinions[i][j] = Double.NaN;
-            }
-        }
-        // clear all pairwise comparisons from previous ticks
-        for (int reporter = 0; reporter < opPairwise.length; reporter++) {
-            for (int agent1 = 0; agent1 < opPairwise.length; agent1++) {
-                for (int agent2 = 0; agent2 < opPairwise.length; agent2++) {
-                    opPairwise[reporter][agent1][agent2] = false;
-                }
-            }
-        }
-
-        // fill the array of absolute opinions using the received opinions
-        for (Opinion opinion : list) {
-            rcvOpinions[opinion.agent1][opinion.agent2] = opinion.internalTrustDegree;
-        }
+        state.processOpinions(list);
+        trust = null;
+    }
 
-        // fill the array of pairwise opinion comparisons
-        for (int reporter = 0; reporter < opPairwise.length; reporter++) {
-            for (int source = 0; source < opPairwise.length; source++) {
-                for (int target = 0; target < opPairwise.length; target++) {
-                    if (!Double.isNaN(rcvOpinions[reporter][source]) && !Double.isNaN(rcvOpinions[reporter][target])) {
-                        opPairwise[reporter][source][target] = rcvOpinions[reporter][source] < rcvOpinions[reporter][target];
-                    }
-                }
-            }
+    /**
+     * Returns the orders of the current tick. They do not depend on the service, and are computed on
+     * the first call after the model receives new data; later calls return the same map.
+     */
+    @Override
+    public Map<Integer, PairwiseOrder> getTrust(int service) {
+        if (trust == null) {
+            trust = computeTrust();
         }
 
-        // compute closures over all pairwise comparisons
-        for (int reporter = 0; reporter < opPairwise.length; reporter++) {
-            Matrices.closure(opPairwise[reporter], opClosures[reporter]);
-        }
+        return trust;
     }
 
-    @Override
-    public Map<Integer, PairwiseOrder> getTrust(int service) {
-        final List<Statement> statements = new ArrayList<>();
+    private Map<Integer, PairwiseOrder> computeTrust() {
+        final int agents = state.agents;
 
-        for (int source = 0; source < opClosures.length; source++) {
-            for (int target = 0; target < opClosures.length; target++) {
-                if (source == target) {
-                    continue;
-                }
+        // support for all statements source < target
+        final DenseMatrix statementSupport = state.support();
 
-                // compute support for source < target
-                double support = 0;
-                for (int reporter = 0; reporter < opClosures.length; reporter++) {
-                    if (opClosures[reporter][source][target]) {
-                        final Past past = local[reporter];
-                        final double right = past.weightedRights(time);
-                        final double wrong = past.weightedWrongs(time);
+        // statements are identified by their cells, source * agents + target
+        if (stCells.length < agents * agents) {
+            stCells = new int[agents * agents];
+            stBuffer = new int[agents * agents];
+            stSources = new int[agents * agents];
+            stTargets = new int[agents * agents];
+            stSupports = new double[agents * agents];
+        }
 
-                        support += 1d / (1d + Math.exp(TRUTH_OFFSET + wrong - right));
-                    }
-                }
+        // create matrices
+        boolean warm = rebuildInterval > 0 && kbAdjacency != null && kbVersion == state.version
+                && sinceRebuild + 1 < rebuildInterval;
+        int changed = 0;
+        if (warm) {
+            changed = findChanges(statementSupport);
+            warm = changed >= 0;
+        }
+
+        final DenseMatrix adjacency, strongestPaths;
+        int count = 0;
+
+        if (warm) {
+            // start with the previous KB and revise it with the changes
+            adjacency = kbAdjacency;
+            strongestPaths = kbPaths;
+            count = reviseChanges(statementSupport, changed);
+            sinceRebuild++;
+        } else {
+            // start with experiences and add statements incrementally
+            adjacency = new DenseMatrix(agents);
+            strongestPaths = new DenseMatrix(agents);
+            adjacency.copyFrom(state.xpPairwise);
+            strongestPaths.copyFrom(state.xpClosure);
+
+            for (int cell = 0; cell < agents * agents; cell++) {
                 // consider statement only if support is larger than 0
-                if (support > 0) {
-                    statements.add(new Statement(source, target, support));
+                if (statementSupport.data[cell] > 0) {
+                    stCells[count++] = cell;
                 }
             }
         }
 
-        // sort statements by support: from most to least reputable
-        statements.sort(Comparator.comparingDouble(o -> -o.support));
-//        statements.sort(Comparator.comparingDouble(o -> o.support));
-//        Collections.shuffle(statements);
-
-        // create matrices
-        // start with experiences and add statements incrementally
-        final double[][] adjacency = new double[opClosures.length][opClosures.length];
-        final double[][] strongestPaths = new double[opClosures.length][opClosures.length];
-        for (int i = 0; i < xpClosure.length; i++) {
-            System.arraycopy(xpPairwise[i], 0, adjacency[i], 0, xpPairwise.length);
-            System.arraycopy(xpClosure[i], 0, strongestPaths[i], 0, xpClosure.length);
-        }
-
-        // final double[][] adjacency = new double[opClosures.length][opClosures.length];
-        // final double[][] strongestPaths = new double[opClosures.length][opClosures.length];
+        // final DenseMatrix adjacency = new DenseMatrix(agents);
+        // final DenseMatrix strongestPaths = new DenseMatrix(agents);
         // Matrices.strongestPaths(adjacency, strongestPaths);
 
         // debugging
         // int expansion = 0, revision = 0, skip = 0;
+        // order statements, by default by support: from most to least reputable
+        order.sort(stCells, count, statementSupport.data, stBuffer);
+
         // perform non-prioritized revision in the order of most supported statements
-        for (Statement s : statements) {
-            if (strongestPaths[s.target][s.source] == 0d) {
+        final int[] sources = stSources, targets = stTargets;
+        final double[] supports = stSupports;
+        for (int i = 0; i < count; i++) {
+            sources[i] = stCells[i] / agents;
+            targets[i] = stCells[i] % agents;
+            supports[i] = statementSupport.data[stCells[i]];
+        }
+
+        int next = 0;
+        while (next < count) {
+            // expand the KB with the run of non-contradicting statements at once
+            next = Matrices.expand(adjacency, sources, targets, supports, next, count, strongestPaths);
+            if (next == count) {
+                break;
+            }
+
+            // the statement that stopped the run
+            final int source = sources[next], target = targets[next];
+            final double support = supports[next++];
+            if (strongestPaths.get(target, source) == 0d) {
                 // if there is no contradiction, expand the KB with this statement
-                Matrices.expand(adjacency, s.source, s.target, s.support, strongestPaths);
+                Matrices.expand(adjacency, source, target, support, strongestPaths);
                 // expansion++;
-            } else if (strongestPaths[s.target][s.source] < s.support) {
+            } else if (strongestPaths.get(target, source) < support) {
                 // if there is a contradiction, but the support for the new statement
                 // is stronger, contract the opposite statement from the KB, and
                 // expand it with new statement
-                Matrices.contract(adjacency, s.target, s.source, strongestPaths);
-                Matrices.expand(adjacency, s.source, s.target, s.support, strongestPaths);
+                Matrices.contract(adjacency, target, source, strongestPaths);
+                Matrices.expand(adjacency, source, target, support, strongestPaths);
                 // revision++;
             } /*else {
                 // else, skip new data
@@ -275,82 +393,121 @@ public class Orders extends AbstractTrustModel<PairwiseOrder> {
         }
 
         /*System.out.println("TIME: " + time);
-        System.out.println(Matrices.printMatrix(xpClosure));
-        System.out.println(Matrices.printMatrix(strongestPaths));*/
-
-
-        final Map<Integer, PairwiseOrder> order = new HashMap<>();
-        for (int agent = 0; agent < adjacency.length; agent++) {
-            order.put(agent, new PairwiseOrder(agent, adjacency));
+        System.out.println(Matrices.printMatrix(xpClosure.toArray()));
+        System.out.println(Matrices.printMatrix(strongestPaths.toArray()));*/
+
+
+        // keep the KB for the next tick; the orders read from a snapshot, so later ticks do not change them
+        if (rebuildInterval > 0 && !warm) {
+            kbAdjacency = adjacency;
+            kbPaths = strongestPaths;
+            kbExperiences = copy(state.xpPairwise);
+            kbSupport = copy(statementSupport);
+            kbVersion = state.version;
+            sinceRebuild = 0;
         }
+        kbTime = state.time;
 
-        return order;
+        return PairwiseOrder.snapshot(adjacency, state.index);
     }
 
-    private static class Statement {
-        final int source, target;
-        final double support;
-
-        private Statement(int source, int target, double support) {
-            this.source = source;
-            this.target = target;
-            this.support = support;
+    /**
+     * Finds the experiences and statements whose values changed since they were last revised, and
+     * stores their cells in stBuffer. An experience that decayed since the previous tick like all
+     * experiences of agents without new experiences did is not changed; the value it is compared
+     * with in later ticks decays with it.
+     *
+     * @return the number of changed cells, or -1 if more than an eighth of all cells changed
+     */
+    private int findChanges(DenseMatrix statementSupport) {
+        final int agents = state.agents;
+        final double[] experiences = state.xpPairwise.data, supports = statementSupport.data;
+        final double[] kbXp = kbExperiences.data, kbSp = kbSupport.data;
+        final double decay = Math.exp(-Past.TF * (state.time - kbTime));
+
+        int changed = 0;
+        for (int cell = 0; cell < agents * agents; cell++) {
+            final boolean experienceChanged = changed(kbXp[cell], experiences[cell]);
+            final boolean decayed = experienceChanged && !changed(decay * kbXp[cell], experiences[cell]);
+
+            if (experienceChanged && !decayed || changed(kbSp[cell], supports[cell])) {
+                stBuffer[changed++] = cell;
+            } else if (decayed) {
+                kbXp[cell] *= decay;
+            }
         }
 
-        @Override
-        public String toString() {
-            return String.format("[%d < %d, %.2f]", source, target, support);
-        }
+        // every changed cell is removed and inserted again one at a time, while revision from scratch
+        // starts with the closure of all experiences, so it is cheaper when many cells changed
+        return changed > agents * agents / 8 ? -1 : changed;
     }
 
-    @Override
-    public void setAgents(List<Integer> list) {
-        // expands all arrays when the number of agents increases
-
-        final int currentSize = opPairwise.length;
-        final int limit = list.stream().max(Integer::compareTo).orElse(0) + 1;
-
-        if (limit <= currentSize) {
-            return;
+    /**
+     * Removes from the previous KB the edges of the changed experiences and statements, and inserts
+     * the changed experiences again. Experiences take precedence, as they do when the KB is revised
+     * from scratch, so they contract any contrary paths.
+     *
+     * @param changed the number of changed cells in stBuffer; see {@link #findChanges(DenseMatrix)}
+     * @return the number of changed statements, which are stored in stCells for revision
+     */
+    private int reviseChanges(DenseMatrix statementSupport, int changed) {
+        final int agents = state.agents;
+        final double[] experiences = state.xpPairwise.data, supports = statementSupport.data;
+        final double[] kbXp = kbExperiences.data, kbSp = kbSupport.data;
+
+        for (int c = 0; c < changed; c++) {
+            kbXp[stBuffer[c]] = experiences[stBuffer[c]];
+            kbSp[stBuffer[c]] = supports[stBuffer[c]];
         }
 
-        final boolean[][][] _opPairwise = new boolean[limit][limit][limit];
-        final boolean[][][] _opClosures = new boolean[limit][limit][limit];
+        Matrices.remove(kbAdjacency, stBuffer, changed, kbPaths);
 
-        final double[][] _rcvOpinions = new double[limit][limit];
-        final double[][] _xpPairwise = new double[limit][limit];
-        final double[][] _xpClosure = new double[limit][limit];
+        int count = 0;
+        for (int c = 0; c < changed; c++) {
+            final int cell = stBuffer[c];
+            final int source = cell / agents, target = cell % agents;
 
-        for (int i = 0; i < currentSize; i++) {
-            for (int j = 0; j < currentSize; j++) {
-                System.arraycopy(opPairwise[i][j], 0, _opPairwise[i][j], 0, currentSize);
-                System.arraycopy(opClosures[i][j], 0, _opClosures[i][j], 0, currentSize);
+            if (experiences[cell] > 0) {
+                if (kbPaths.get(target, source) > 0) {
+                    Matrices.contract(kbAdjacency, target, source, kbPaths);
+                }
+                Matrices.expand(kbAdjacency, source, target, experiences[cell], kbPaths);
+            }
+
+            if (supports[cell] > 0) {
+                stCells[count++] = cell;
             }
-            System.arraycopy(rcvOpinions[i], 0, _rcvOpinions[i], 0, currentSize);
-            System.arraycopy(xpPairwise[i], 0, _xpPairwise[i], 0, currentSize);
-            System.arraycopy(xpClosure[i], 0, _xpClosure[i], 0, currentSize);
         }
 
-        opPairwise = _opPairwise;
-        opClosures = _opClosures;
+        return count;
+    }
 
-        rcvOpinions = _rcvOpinions;
-        xpPairwise = _xpPairwise;
-        xpClosure = _xpClosure;
+    private static boolean changed(double previous, double current) {
+        return (previous > 0) != (current > 0) || Math.abs(current - previous) > WARM_START_TOLERANCE * previous;
+    }
 
-        // increase and initialize past experiences
-        final Past[] _local = new Past[limit];
-        System.arraycopy(local, 0, _local, 0, currentSize);
-        for (int i = 0; i < limit; i++) {
-            if (_local[i] == null) {
-                _local[i] = new Past();
-            }
-        }
-        local = _local;
+    private static DenseMatrix copy(DenseMatrix matrix) {
+        final DenseMatrix copy = new DenseMatrix(matrix.size());
+        copy.copyFrom(matrix);
+        return copy;
+    }
+
+    @Override
+    public void setAgents(List<Integer> list) {
+        state.setAgents(list);
+        trust = null;
+    }
+
+    /**
+     * Allocates arrays for given number of agents, so that setAgents does not reallocate them while
+     * the population stays within it.
+     */
+    public void ensureCapacity(int capacity) {
+        state.ensureCapacity(capacity);
     }
 
     @Override
     public String toString() {
-        return "Credibility Dynamics";
+        return name;
     }
 }
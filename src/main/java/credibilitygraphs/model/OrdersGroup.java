@@ -0,0 +1,50 @@
+package credibilitygraphs.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of {@link Orders} models that differ only in the order in which they revise their KBs.
+ * <p>
+ * The models share the processing of experiences and opinions, and the support of statements,
+ * which are computed once per tick instead of once per model. Each model still reports as a trust
+ * model of its own. All models of a group must be driven in lockstep on a single thread, and
+ * receive the same inputs in each tick, as when they evaluate a single run of a scenario; each
+ * kind of input is processed when the first model receives it in a tick. Every model must therefore
+ * receive agents, experiences and opinions exactly once per tick, and all models must be
+ * initialized together before a new run.
+ */
+public final class OrdersGroup {
+    private final OrdersState state = new OrdersState(true);
+    private final List<Orders> models = new ArrayList<>();
+
+    /**
+     * Adds a model that revises its KB with statements in given order.
+     *
+     * @param name the name the model reports
+     */
+    public Orders add(String name, StatementOrder order) {
+        return add(name, order, 0);
+    }
+
+    /**
+     * Adds a model that revises its KB with statements in given order, and warm-starts revision
+     * as described in {@link Orders#Orders(int)}.
+     *
+     * @param name the name the model reports
+     */
+    public Orders add(String name, StatementOrder order, int rebuildInterval) {
+        final Orders model = new Orders(state, order, rebuildInterval, name);
+        models.add(model);
+        return model;
+    }
+
+    public List<Orders> models() {
+        return Collections.unmodifiableList(models);
+    }
+
+    OrdersState state() {
+        return state;
+    }
+}
@@ -0,0 +1,324 @@
+package credibilitygraphs.model;
+
+import atb.interfaces.Experience;
+import atb.interfaces.Opinion;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The state that {@link Orders} builds from its inputs: opinions, experiences, the past accuracy
+ * of reporters, and the support of statements, which is computed once per tick.
+ * <p>
+ * A state can be shared by the models of an {@link OrdersGroup}, which all receive the same inputs.
+ * A shared state then processes each kind of input once per tick, when the first model receives it.
+ */
+final class OrdersState {
+    // the "starting number" of false opinions
+    // prevents new reporters from having too much influence
+    private static final double TRUTH_OFFSET = 5.0;
+
+    // whether several models pass the same inputs to this state
+    private final boolean shared;
+
+    // the ticks in which each kind of input was last processed, when shared
+    private int agentsTime = Integer.MIN_VALUE;
+    private int experiencesTime = Integer.MIN_VALUE;
+    private int opinionsTime = Integer.MIN_VALUE;
+
+    // opinions; reporter r says that a < b iff rcvOpinions[r][a] < rcvOpinions[r][b],
+    // which is already transitive, and false when either opinion is missing (NaN)
+    private double[][] rcvOpinions = new double[0][0];
+
+    // reporters grouped by the order of their opinions, which are kept as ranks; regrouped lazily
+    // after agents change
+    private final OrderGroups groups = new OrderGroups();
+    private boolean grouped = false;
+
+    // dense indices of agent ids; arrays are indexed by them
+    final AgentIndex index = new AgentIndex();
+
+    // the number of agents; arrays are allocated for at least as many
+    int agents = 0;
+
+    // incremented whenever agents join or leave, which renumbers or adds rows and columns
+    int version = 0;
+
+    // experiences
+    final DenseMatrix xpPairwise = new DenseMatrix(0);
+    final DenseMatrix xpClosure = new DenseMatrix(0);
+
+    // summary of experiences with every agent in the current tick: decayed average and weight,
+    // and agents ranked by their averages
+    private double[] xpAverages = new double[0];
+    private double[] xpWeights = new double[0];
+    private int[] xpRanking = new int[0];
+    private int[] xpBuffer = new int[0];
+
+    // credibility of every reporter in the current tick
+    private double[] credibility = new double[0];
+
+    // whether the past accuracy of every group of reporters rose (1), fell (-1) or stayed (0)
+    private int[] verdicts = new int[0];
+
+    // support for all statements source < target in the current tick, or null if not computed yet
+    private DenseMatrix support = null;
+
+    // local history
+    private Orders.Past[] local = new Orders.Past[0];
+
+    // the current tick
+    int time = 0;
+
+    OrdersState(boolean shared) {
+        this.shared = shared;
+    }
+
+    void initialize() {
+        time = 0;
+        support = null;
+        agentsTime = Integer.MIN_VALUE;
+        experiencesTime = Integer.MIN_VALUE;
+        opinionsTime = Integer.MIN_VALUE;
+    }
+
+    void setCurrentTime(int i) {
+        // the models of a group set the same tick in turn, and share its support
+        if (!shared || time != i) {
+            support = null;
+        }
+        time = i;
+    }
+
+    void setAgents(List<Integer> list) {
+        if (shared) {
+            if (agentsTime == time) {
+                return;
+            }
+            agentsTime = time;
+        }
+        support = null;
+        grouped = false;
+
+        // moves all arrays when agents leave or join between existing ones, and expands them when
+        // the number of agents increases
+
+        final int[] moves = index.update(list);
+        final int limit = index.size();
+        if (moves != null || limit != agents) {
+            version++;
+        }
+
+        // grow geometrically, so that newcomers rarely cause a reallocation
+        if (limit > rcvOpinions.length) {
+            DenseMatrix.checkSize(limit);
+            ensureCapacity(Math.min(Math.max(limit, 2 * rcvOpinions.length), DenseMatrix.MAX_SIZE));
+        }
+
+        if (moves != null) {
+            AgentIndex.move(rcvOpinions, moves, limit, Double.NaN);
+            AgentIndex.move(local, moves, limit);
+            xpPairwise.move(moves, limit);
+            xpClosure.move(moves, limit);
+        }
+
+        xpPairwise.resize(limit);
+        xpClosure.resize(limit);
+
+        // initialize past experiences
+        for (int i = 0; i < limit; i++) {
+            if (local[i] == null) {
+                local[i] = new Orders.Past();
+            }
+        }
+
+        agents = limit;
+    }
+
+    void processExperiences(List<Experience> list) {
+        if (shared) {
+            if (experiencesTime == time) {
+                return;
+            }
+            experiencesTime = time;
+        }
+        support = null;
+
+        for (Experience e : list) {
+            final int agent = index.indexOf(e.agent);
+            if (agent >= 0) {
+                local[agent].addExperience(e);
+            }
+        }
+
+        // clear all pairwise experience comparisons
+        xpPairwise.fill(0);
+
+        // summarize experiences with every agent
+        for (int agent = 0; agent < agents; agent++) {
+            xpAverages[agent] = local[agent].experienceAverage(time);
+            xpWeights[agent] = local[agent].experienceWeight(time);
+            xpRanking[agent] = agent;
+        }
+        Sorting.sort(xpRanking, agents, xpAverages, xpBuffer);
+
+        // fill the array of pairwise experience comparisons: every agent is worse than
+        // the agents that follow it in the ranking and have a strictly larger average
+        int better = 0;
+        for (int i = 0; i < agents; i++) {
+            final int agent1 = xpRanking[i];
+
+            while (better < agents && xpAverages[xpRanking[better]] <= xpAverages[agent1]) {
+                better++;
+            }
+
+            for (int j = better; j < agents; j++) {
+                final int agent2 = xpRanking[j];
+                xpPairwise.set(agent1, agent2, Math.min(xpWeights[agent1], xpWeights[agent2]));
+            }
+        }
+
+        // compute closure over pairwise experience comparisons
+        Matrices.parallelStrongestPaths(xpPairwise, xpClosure);
+
+        // updating past accuracy, once for every group of reporters with the same opinions
+        group();
+
+        for (Experience e : list) {
+            final int target = index.indexOf(e.agent);
+            if (target < 0) {
+                continue;
+            }
+
+            for (int reporter = 0; reporter < agents; reporter++) {
+                final int representative = groups.representatives[reporter];
+
+                if (representative == reporter) {
+                    final double[] opinions = rcvOpinions[reporter];
+                    int right = 0, wrong = 0;
+
+                    for (int agent = 0; agent < agents; agent++) {
+                        if (xpClosure.get(agent, target) > 0) {
+                            if (opinions[agent] < opinions[target]) {
+                                right++;
+                            } else if (opinions[target] < opinions[agent]) {
+                                wrong++;
+                            }
+                        }
+                    }
+
+                    verdicts[reporter] = Integer.compare(right, wrong);
+                }
+
+                if (verdicts[representative] > 0) {
+                    local[reporter].addRight(time);
+                } else if (verdicts[representative] < 0) {
+                    local[reporter].addWrong(time);
+                }
+            }
+        }
+    }
+
+    void processOpinions(List<Opinion> list) {
+        if (shared) {
+            if (opinionsTime == time) {
+                return;
+            }
+            opinionsTime = time;
+        }
+        support = null;
+
+        // clear all absolute opinions from previous ticks
+        for (int reporter = 0; reporter < agents; reporter++) {
+            Arrays.fill(rcvOpinions[reporter], 0, agents, Double.NaN);
+        }
+
+        // fill the array of absolute opinions using the received opinions
+        for (Opinion opinion : list) {
+            final int reporter = index.indexOf(opinion.agent1);
+            final int agent = index.indexOf(opinion.agent2);
+            if (reporter >= 0 && agent >= 0) {
+                rcvOpinions[reporter][agent] = opinion.internalTrustDegree;
+            }
+        }
+
+        // keep opinions as ranks, so that reporters with the same order have the same rows
+        for (int reporter = 0; reporter < agents; reporter++) {
+            groups.canonicalize(rcvOpinions[reporter], agents);
+        }
+        grouped = false;
+        group();
+    }
+
+    /**
+     * Groups reporters by their opinions, unless they already are.
+     */
+    private void group() {
+        if (!grouped) {
+            groups.group(rcvOpinions, agents, agents);
+            grouped = true;
+        }
+    }
+
+    /**
+     * The support for all statements source &lt; target in the current tick: the sum of credibilities
+     * of the reporters that make them, added in the order of reporters. The matrix must not be modified.
+     */
+    DenseMatrix support() {
+        if (support != null) {
+            return support;
+        }
+
+        // the credibility of every reporter
+        for (int reporter = 0; reporter < agents; reporter++) {
+            final Orders.Past past = local[reporter];
+            final double right = past.weightedRights(time);
+            final double wrong = past.weightedWrongs(time);
+
+            credibility[reporter] = 1d / (1d + Math.exp(TRUTH_OFFSET + wrong - right));
+        }
+
+        // compute support for all statements source < target; every reporter adds its own credibility,
+        // even when others share its opinions, since summing the credibility of a group first would
+        // round differently and could reorder statements with nearly equal support
+        support = new DenseMatrix(agents);
+        Matrices.support(rcvOpinions, credibility, support);
+
+        return support;
+    }
+
+    /**
+     * Allocates arrays for given number of agents, so that setAgents does not reallocate them while
+     * the population stays within it.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= rcvOpinions.length) {
+            return;
+        }
+        DenseMatrix.checkSize(capacity);
+
+        // opinions about new agents are missing until the next batch of opinions
+        final double[][] _rcvOpinions = new double[capacity][capacity];
+        for (int i = 0; i < capacity; i++) {
+            Arrays.fill(_rcvOpinions[i], Double.NaN);
+        }
+        for (int i = 0; i < rcvOpinions.length; i++) {
+            System.arraycopy(rcvOpinions[i], 0, _rcvOpinions[i], 0, rcvOpinions.length);
+        }
+        rcvOpinions = _rcvOpinions;
+
+        xpPairwise.ensureCapacity(capacity);
+        xpClosure.ensureCapacity(capacity);
+
+        xpAverages = new double[capacity];
+        xpWeights = new double[capacity];
+        xpRanking = new int[capacity];
+        xpBuffer = new int[capacity];
+        credibility = new double[capacity];
+        verdicts = new int[capacity];
+
+        final Orders.Past[] _local = new Orders.Past[capacity];
+        System.arraycopy(local, 0, _local, 0, local.length);
+        local = _local;
+    }
+}
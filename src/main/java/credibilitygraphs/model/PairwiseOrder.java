@@ -2,17 +2,54 @@ package credibilitygraphs.model;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class PairwiseOrder implements Comparable<PairwiseOrder> {
-    private final double[][] comparisons;
+    private final DenseMatrix comparisons;
+    private final Dominance dominance;
     private final int agent;
 
-    PairwiseOrder(int agent, double[][] comparisons) {
+    PairwiseOrder(int agent, DenseMatrix comparisons) {
         this.agent = agent;
         this.comparisons = comparisons;
+        this.dominance = null;
+    }
+
+    /**
+     * Creates an order that reads from a compact snapshot, instead of keeping the matrix of comparisons.
+     */
+    PairwiseOrder(int agent, Dominance dominance) {
+        this.agent = agent;
+        this.comparisons = null;
+        this.dominance = dominance;
+    }
+
+    /**
+     * Creates the orders of all agents from a single snapshot of given comparisons, keyed by agent ids.
+     */
+    static Map<Integer, PairwiseOrder> snapshot(DenseMatrix comparisons, AgentIndex index) {
+        return snapshot(new Dominance(comparisons), index);
+    }
+
+    /**
+     * Creates the orders of all agents that read from given snapshot, keyed by agent ids.
+     */
+    static Map<Integer, PairwiseOrder> snapshot(Dominance dominance, AgentIndex index) {
+        final Map<Integer, PairwiseOrder> order = new HashMap<>();
+        for (int agent = 0; agent < dominance.size(); agent++) {
+            order.put(index.id(agent), new PairwiseOrder(agent, dominance));
+        }
+
+        return order;
     }
 
     @Override
     public int compareTo(@NotNull PairwiseOrder that) {
-        return Double.compare(comparisons[that.agent][this.agent], comparisons[this.agent][that.agent]);
+        if (dominance != null) {
+            return dominance.compare(this.agent, that.agent);
+        }
+
+        return Double.compare(comparisons.get(that.agent, this.agent), comparisons.get(this.agent, that.agent));
     }
 }
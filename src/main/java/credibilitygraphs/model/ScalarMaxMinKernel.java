@@ -0,0 +1,23 @@
+package credibilitygraphs.model;
+
+/**
+ * The max-min kernel as a plain loop.
+ */
+class ScalarMaxMinKernel implements MaxMinKernel {
+    @Override
+    public void relax(double[] p, int offsetI, int offsetK, int length, double ik) {
+        for (int j = 0; j < length; j++) {
+            final double kj = p[offsetK + j];
+            final double through = ik < kj ? ik : kj;
+
+            if (through > p[offsetI + j]) {
+                p[offsetI + j] = through;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
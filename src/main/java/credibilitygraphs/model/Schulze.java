@@ -4,7 +4,8 @@ import atb.interfaces.Experience;
 import atb.interfaces.Opinion;
 import atb.trustmodel.AbstractTrustModel;
 
-import java.util.HashMap;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -18,11 +19,35 @@ import java.util.Map;
 public class Schulze extends AbstractTrustModel<PairwiseOrder> {
     private static final int SIZE = 10;
 
-    // opinions
-    private boolean[][][] opPairwise = new boolean[SIZE][SIZE][SIZE];
-    private boolean[][][] opClosures = new boolean[SIZE][SIZE][SIZE];
+    // opinions; rows are packed into 64-bit words, on the heap or off-heap
+    private final boolean offHeap;
+    private BitCube opPairwise;
+    private BitCube opClosures;
+
+    // the closures transposed: row target of a matrix holds the agents the reporter ranks below target,
+    // so that a column of the closure is read a word of 64 agents at a time
+    private BitCube opColumns;
     private double[][] rcvOpinions = new double[SIZE][SIZE];
 
+    // reporters grouped by the order of their opinions, which are kept as ranks; the comparisons and
+    // closure of a group are stored once, in the matrices of its first reporter
+    private final OrderGroups groups = new OrderGroups();
+
+    // the reporter whose matrices hold the closure of every reporter
+    private int[] slots = new int[SIZE];
+
+    // whether the matrices of a reporter hold the closure of its current opinions
+    private boolean[] closed = new boolean[SIZE];
+
+    // opinions received in the current tick, before they are compared with the previous ones
+    private double[][] rcvBuffer = new double[SIZE][SIZE];
+
+    // the number of agents the opinion closures were computed for
+    private int closuresSize = 0;
+
+    // the number of times the closure of a reporter was kept, because its opinions did not change
+    private long skippedReporters = 0;
+
     // experiences
     private int[] xpCount = new int[SIZE];
     private double[] xpSum = new double[SIZE];
@@ -31,12 +56,61 @@ public class Schulze extends AbstractTrustModel<PairwiseOrder> {
     private int[] paRight = new int[SIZE];
     private int[] paWrong = new int[SIZE];
 
+    // dense indices of agent ids; arrays are indexed by them
+    private final AgentIndex index = new AgentIndex();
+
+    // the number of agents; arrays are allocated for at least as many
+    private int agents = 0;
+
+    // the orders computed in the current tick; cleared whenever the model receives new data
+    private Map<Integer, PairwiseOrder> trust = null;
+
+    // the snapshot the orders of the current tick read from
+    private Dominance dominance = null;
+
+    // sum of the weighted closures of all reporters, or null when agents changed
+    private DenseMatrix preferences = null;
+
+    // the preferences that differ from the adjacency of the strongest paths, as edges for Matrices.update;
+    // holds only as many as are repaired, more are handled by computing the paths from scratch
+    private int[] changedEdges = new int[0];
+    private double[] changedValues = new double[0];
+
+    // the preferences the strongest paths were last computed from, and the paths
+    private DenseMatrix adjacency = null;
+    private DenseMatrix paths = null;
+
+    public Schulze() {
+        this(BitCube.OFF_HEAP);
+    }
+
+    /**
+     * @param offHeap whether the opinion matrices are stored off-heap; see {@link #release()}
+     */
+    public Schulze(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.opPairwise = new BitCube(SIZE, offHeap);
+        this.opClosures = new BitCube(SIZE, offHeap);
+        this.opColumns = new BitCube(SIZE, offHeap);
+    }
+
+    /**
+     * Frees the off-heap opinion matrices; the model cannot be used afterwards.
+     */
+    public void release() {
+        opPairwise.release();
+        opClosures.release();
+        opColumns.release();
+    }
+
     @Override
     public void initialize(Object... objects) {
+        trust = null;
     }
 
     @Override
     public void setCurrentTime(int i) {
+        trust = null;
     }
 
     @Override
@@ -45,52 +119,99 @@ public class Schulze extends AbstractTrustModel<PairwiseOrder> {
 
     @Override
     public void setAgents(List<Integer> list) {
-        final int currentSize = xpSum.length;
-        final int limit = list.stream().max(Integer::compareTo).orElse(SIZE) + 1;
+        trust = null;
+
+        final int[] moves = index.update(list);
+        final int limit = index.size();
+        if (moves != null || limit > agents) {
+            // rows and columns of the preferences move, so they are computed from scratch
+            preferences = null;
+        }
 
-        if (limit <= currentSize) {
+        // grow geometrically, so that newcomers rarely cause a reallocation
+        if (limit > xpSum.length) {
+            ensureCapacity(Math.max(limit, 2 * xpSum.length));
+        }
+
+        if (moves != null) {
+            // move the arrays after agents have left or joined between existing ones
+            AgentIndex.move(rcvOpinions, moves, limit, 0);
+            AgentIndex.move(xpSum, moves, limit, 0);
+            AgentIndex.move(xpCount, moves, limit);
+            AgentIndex.move(paRight, moves, limit);
+            AgentIndex.move(paWrong, moves, limit);
+
+            // experience comparisons are recomputed from scratch, opinion closures from kept opinions
+            final int cleared = Math.max(moves.length, limit);
+            for (int i = 0; i < cleared; i++) {
+                Arrays.fill(xpPairwise[i], false);
+                Arrays.fill(xpClosure[i], false);
+                opPairwise.clear(i, cleared);
+                opClosures.clear(i, cleared);
+                opColumns.clear(i, cleared);
+                closed[i] = false;
+            }
+            agents = limit;
+            computeClosures();
             return;
         }
 
-        final boolean[][][] _opPairwise = new boolean[limit][limit][limit];
-        final boolean[][][] _opClosures = new boolean[limit][limit][limit];
+        // new reporters have no closures until they send opinions
+        for (int i = agents; i < limit; i++) {
+            slots[i] = i;
+            closed[i] = false;
+        }
 
-        final double[][] _rcvOpinions = new double[limit][limit];
-        final boolean[][] _xpPairwise = new boolean[limit][limit];
-        final boolean[][] _xpClosure = new boolean[limit][limit];
+        agents = limit;
+    }
 
-        for (int i = 0; i < currentSize; i++) {
-            for (int j = 0; j < currentSize; j++) {
-                System.arraycopy(opPairwise[i][j], 0, _opPairwise[i][j], 0, currentSize);
-                System.arraycopy(opClosures[i][j], 0, _opClosures[i][j], 0, currentSize);
-            }
-            System.arraycopy(rcvOpinions[i], 0, _rcvOpinions[i], 0, currentSize);
-            System.arraycopy(xpPairwise[i], 0, _xpPairwise[i], 0, currentSize);
-            System.arraycopy(xpClosure[i], 0, _xpClosure[i], 0, currentSize);
+    /**
+     * Allocates arrays for given number of agents, so that setAgents does not reallocate them while
+     * the population stays within it.
+     */
+    public void ensureCapacity(int capacity) {
+        final int currentCapacity = xpSum.length;
+
+        if (capacity <= currentCapacity) {
+            return;
         }
 
+        final BitCube _opPairwise = new BitCube(capacity, offHeap);
+        final BitCube _opClosures = new BitCube(capacity, offHeap);
+        final BitCube _opColumns = new BitCube(capacity, offHeap);
+        _opPairwise.copyFrom(opPairwise);
+        _opClosures.copyFrom(opClosures);
+        _opColumns.copyFrom(opColumns);
+
+        final double[][] _rcvOpinions = new double[capacity][capacity];
+        final double[][] _rcvBuffer = new double[capacity][capacity];
+        final boolean[][] _xpPairwise = new boolean[capacity][capacity];
+        final boolean[][] _xpClosure = new boolean[capacity][capacity];
+
+        for (int i = 0; i < currentCapacity; i++) {
+            System.arraycopy(rcvOpinions[i], 0, _rcvOpinions[i], 0, currentCapacity);
+            System.arraycopy(xpPairwise[i], 0, _xpPairwise[i], 0, currentCapacity);
+            System.arraycopy(xpClosure[i], 0, _xpClosure[i], 0, currentCapacity);
+        }
+
+        opPairwise.release();
+        opClosures.release();
+        opColumns.release();
         opPairwise = _opPairwise;
         opClosures = _opClosures;
+        opColumns = _opColumns;
 
         rcvOpinions = _rcvOpinions;
+        rcvBuffer = _rcvBuffer;
         xpPairwise = _xpPairwise;
         xpClosure = _xpClosure;
 
-        final int[] _xpCount = new int[limit];
-        System.arraycopy(xpCount, 0, _xpCount, 0, currentSize);
-        xpCount = _xpCount;
-
-        final double[] _xpSum = new double[limit];
-        System.arraycopy(xpSum, 0, _xpSum, 0, currentSize);
-        xpSum = _xpSum;
-
-        final int[] _paRight = new int[limit];
-        System.arraycopy(paRight, 0, _paRight, 0, currentSize);
-        paRight = _paRight;
-
-        final int[] _paWrong = new int[limit];
-        System.arraycopy(paWrong, 0, _paWrong, 0, currentSize);
-        paWrong = _paWrong;
+        xpCount = Arrays.copyOf(xpCount, capacity);
+        xpSum = Arrays.copyOf(xpSum, capacity);
+        paRight = Arrays.copyOf(paRight, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+        closed = Arrays.copyOf(closed, capacity);
+        paWrong = Arrays.copyOf(paWrong, capacity);
     }
 
     @Override
@@ -99,21 +220,26 @@ public class Schulze extends AbstractTrustModel<PairwiseOrder> {
 
     @Override
     public void processExperiences(List<Experience> list) {
+        trust = null;
+
         for (Experience experience : list) {
-            xpSum[experience.agent] += experience.outcome;
-            xpCount[experience.agent] += 1;
+            final int agent = index.indexOf(experience.agent);
+            if (agent >= 0) {
+                xpSum[agent] += experience.outcome;
+                xpCount[agent] += 1;
+            }
         }
 
         // clear all pairwise experience comparisons
-        for (int agent1 = 0; agent1 < xpPairwise.length; agent1++) {
-            for (int agent2 = 0; agent2 < xpPairwise.length; agent2++) {
+        for (int agent1 = 0; agent1 < agents; agent1++) {
+            for (int agent2 = 0; agent2 < agents; agent2++) {
                 xpPairwise[agent1][agent2] = false;
             }
         }
 
         // fill the array of pairwise experience comparisons
-        for (int agent1 = 0; agent1 < xpPairwise.length; agent1++) {
-            for (int agent2 = 0; agent2 < xpPairwise.length; agent2++) {
+        for (int agent1 = 0; agent1 < agents; agent1++) {
+            for (int agent2 = 0; agent2 < agents; agent2++) {
                 xpPairwise[agent1][agent2] = xpSum[agent1] / xpCount[agent1] < xpSum[agent2] / xpCount[agent2];
             }
         }
@@ -121,104 +247,287 @@ public class Schulze extends AbstractTrustModel<PairwiseOrder> {
         // compute closure over pairwise experience comparisons
         Matrices.closure(xpPairwise, xpClosure);
 
+        // the agents that have experiences to compare opinions against
+        final int words = Bits.words(agents);
+        final long[] experienced = new long[words];
+        int compared = 0;
+        for (int agent = 0; agent < agents; agent++) {
+            if (xpCount[agent] > 0) {
+                Bits.set(experienced, agent);
+                compared++;
+            }
+        }
+
+        final long[] below = new long[words];
+        final int[] matches = new int[agents];
+
         for (Experience ex : list) {
-            final int target = ex.agent;
-
-            for (int agent = 0; agent < opClosures.length; agent++) {
-                if (xpCount[agent] > 0) { // do we have an experience to compare this against
-                    final boolean value = xpClosure[agent][target];
-
-                    for (int reporter = 0; reporter < opClosures.length; reporter++) {
-                        if (value == opClosures[reporter][agent][target]) {
-                            paRight[reporter] += 1;
-                        } else {
-                            paWrong[reporter] += 1;
-                        }
+            final int target = index.indexOf(ex.agent);
+            if (target < 0) {
+                continue;
+            }
+
+            // the agents that experiences rank below target
+            Arrays.fill(below, 0);
+            for (int agent = 0; agent < agents; agent++) {
+                if (xpClosure[agent][target]) {
+                    Bits.set(below, agent);
+                }
+            }
+
+            // a reporter is right about every compared agent that its closure ranks below target
+            // exactly when experiences do, which is counted for every group once, 64 agents at a time
+            for (int slot = 0; slot < agents; slot++) {
+                if (slots[slot] != slot) {
+                    continue;
+                }
+
+                int right = 0;
+                if (opColumns.contains(slot)) {
+                    final LongBuffer column = opColumns.matrix(slot);
+                    for (int w = 0; w < words; w++) {
+                        right += Long.bitCount(~(below[w] ^ column.get(target * opColumns.words + w)) & experienced[w]);
+                    }
+                } else {
+                    for (int w = 0; w < words; w++) {
+                        right += Long.bitCount(~below[w] & experienced[w]);
                     }
                 }
+                matches[slot] = right;
+            }
+
+            for (int reporter = 0; reporter < agents; reporter++) {
+                paRight[reporter] += matches[slots[reporter]];
+                paWrong[reporter] += compared - matches[slots[reporter]];
             }
         }
     }
 
     @Override
     public void processOpinions(List<Opinion> list) {
-        // clear all absolute opinions from previous ticks
-        for (int i = 0; i < rcvOpinions.length; i++) {
-            for (int j = 0; j < rcvOpinions.length; j++) {
-                rcvOpinions[i][j] = 0;
+        trust = null;
+
+        // clear the buffer of absolute opinions
+        for (int i = 0; i < agents; i++) {
+            Arrays.fill(rcvBuffer[i], 0, agents, 0);
+        }
+
+        // fill the buffer of absolute opinions using the received opinions
+        for (Opinion opinion : list) {
+            final int reporter = index.indexOf(opinion.agent1);
+            final int agent = index.indexOf(opinion.agent2);
+            if (reporter >= 0 && agent >= 0) {
+                rcvBuffer[reporter][agent] = opinion.internalTrustDegree;
             }
         }
-        // clear all pairwise comparisons from previous ticks
-        for (int reporter = 0; reporter < opPairwise.length; reporter++) {
-            for (int agent1 = 0; agent1 < opPairwise.length; agent1++) {
-                for (int agent2 = 0; agent2 < opPairwise.length; agent2++) {
-                    opPairwise[reporter][agent1][agent2] = false;
-                }
+
+        // keep opinions as ranks, so that reporters with the same order have the same rows
+        for (int reporter = 0; reporter < agents; reporter++) {
+            groups.canonicalize(rcvBuffer[reporter], agents);
+        }
+
+        // keep the closures of reporters whose opinions did not change, unless agents joined
+        final boolean resized = closuresSize != agents;
+
+        for (int reporter = 0; reporter < agents; reporter++) {
+            if (!resized && OrderGroups.equal(rcvBuffer[reporter], rcvOpinions[reporter], agents)) {
+                skippedReporters++;
+                continue;
             }
+
+            final double[] opinions = rcvBuffer[reporter];
+            rcvBuffer[reporter] = rcvOpinions[reporter];
+            rcvOpinions[reporter] = opinions;
+            closed[reporter] = false;
         }
 
-        // fill the array of absolute opinions using the received opinions
-        for (Opinion opinion : list) {
-            rcvOpinions[opinion.agent1][opinion.agent2] = opinion.internalTrustDegree;
+        computeClosures();
+    }
+
+    /**
+     * The number of times a reporter sent the same opinions as in the previous tick, so that its
+     * pairwise comparisons and their closure were not computed again.
+     */
+    public long getSkippedReporters() {
+        return skippedReporters;
+    }
+
+    /**
+     * The number of distinct orders among the opinions of the last tick, whose closures are stored.
+     */
+    public int getDistinctOrders() {
+        return groups.distinct;
+    }
+
+    /**
+     * Groups reporters by their opinions, and computes the closure of every group whose first
+     * reporter does not hold it yet. The matrices of the other reporters are dropped.
+     */
+    private void computeClosures() {
+        groups.group(rcvOpinions, agents, agents);
+
+        for (int reporter = 0; reporter < agents; reporter++) {
+            final int representative = groups.representatives[reporter];
+            slots[reporter] = representative;
+
+            if (representative != reporter) {
+                opPairwise.drop(reporter);
+                opClosures.drop(reporter);
+                opColumns.drop(reporter);
+                closed[reporter] = false;
+            } else if (!closed[reporter]) {
+                computeClosure(reporter);
+                closed[reporter] = true;
+            }
         }
 
-        // fill the array of pairwise opinion comparisons
-        for (int reporter = 0; reporter < opPairwise.length; reporter++) {
-            for (int agent1 = 0; agent1 < opPairwise.length; agent1++) {
-                for (int agent2 = 0; agent2 < opPairwise.length; agent2++) {
-                    opPairwise[reporter][agent1][agent2] = rcvOpinions[reporter][agent1] < rcvOpinions[reporter][agent2];
+        closuresSize = agents;
+    }
+
+    /**
+     * Computes pairwise comparisons and their closure from the absolute opinions of given reporter.
+     */
+    private void computeClosure(int reporter) {
+        final double[] opinions = rcvOpinions[reporter];
+
+        // clear pairwise comparisons from previous ticks, and fill them from the opinions
+        opPairwise.clear(reporter, agents);
+        for (int agent1 = 0; agent1 < agents; agent1++) {
+            for (int agent2 = 0; agent2 < agents; agent2++) {
+                if (opinions[agent1] < opinions[agent2]) {
+                    opPairwise.set(reporter, agent1, agent2);
                 }
             }
         }
 
-        // compute closures over all pairwise comparisons
-        for (int reporter = 0; reporter < opPairwise.length; reporter++) {
-            Matrices.closure(opPairwise[reporter], opClosures[reporter]);
+        // compute closure over pairwise comparisons
+        Matrices.closure(opPairwise.matrix(reporter), opClosures.matrix(reporter), opPairwise.words, agents);
+
+        // transpose the closure
+        final LongBuffer closure = opClosures.matrix(reporter);
+        opColumns.clear(reporter, agents);
+        for (int agent1 = 0; agent1 < agents; agent1++) {
+            for (int w = 0; w < Bits.words(agents); w++) {
+                long word = closure.get(agent1 * opClosures.words + w);
+
+                while (word != 0) {
+                    opColumns.set(reporter, (w << 6) + Long.numberOfTrailingZeros(word), agent1);
+                    word &= word - 1;
+                }
+            }
         }
     }
 
     /**
-     * Sums all closures into preference matrix
+     * Computes the preference matrix: the sum of the closures of all reporters, weighted by their
+     * past accuracy. Reporters that share a closure read it from the same slot, but every reporter
+     * adds its own weight, in the order of reporters, so that every element is the same sum as when
+     * each reporter holds its own closure.
      *
      * @param closures an array of closure matrices
-     * @return component-wise sum of all closure matrices
+     * @param size     the number of agents in the closure matrices
      */
-    private double[][] computePreferences(boolean[][][] closures) {
-        final double[][] preferences = new double[closures.length][closures.length];
-
-        for (int reporter = 0; reporter < closures.length; reporter++) {
-            for (int agent1 = 0; agent1 < closures.length; agent1++) {
-                for (int agent2 = 0; agent2 < closures.length; agent2++) {
-                    // preferences[agent1][agent2] += closures[reporter][agent1][agent2] ? 1 : 0;
-                    if (closures[reporter][agent1][agent2]) {
-                        preferences[agent1][agent2] += 1d / (1d + Math.exp(paWrong[reporter] - paRight[reporter]));
+    private void computePreferences(BitCube closures, int size) {
+        if (preferences == null) {
+            preferences = new DenseMatrix(size);
+            changedEdges = new int[size / 4 + 1];
+            changedValues = new double[size / 4 + 1];
+            adjacency = null;
+        }
+
+        // sum whole closures, a word at a time
+        preferences.fill(0);
+        for (int reporter = 0; reporter < size; reporter++) {
+            final int slot = slots[reporter];
+            if (!closures.contains(slot)) {
+                continue;
+            }
+
+            // preferences[agent1][agent2] += closures[slot][agent1][agent2] ? weight : 0;
+            final double weight = 1d / (1d + Math.exp(paWrong[reporter] - paRight[reporter]));
+            final LongBuffer closure = closures.matrix(slot);
+            for (int agent1 = 0; agent1 < size; agent1++) {
+                for (int w = 0; w < Bits.words(size); w++) {
+                    long word = closure.get(agent1 * closures.words + w);
+
+                    while (word != 0) {
+                        final int agent2 = (w << 6) + Long.numberOfTrailingZeros(word);
+                        preferences.add(agent1, agent2, weight);
+                        word &= word - 1;
                     }
                 }
             }
         }
-
-        return preferences;
     }
 
+    /**
+     * Returns the orders of the current tick. They do not depend on the service, and are computed on
+     * the first call after the model receives new data; later calls return the same map.
+     */
     @Override
     public Map<Integer, PairwiseOrder> getTrust(int service) {
+        if (trust == null) {
+            trust = computeTrust();
+        }
+
+        return trust;
+    }
+
+    /**
+     * Returns the ids of all agents in the Schulze ranking of the current tick, most trusted first.
+     * Every agent comes before all agents that {@link #getTrust(int)} orders below it, so the ranking
+     * can be used instead of sorting agents with their orders.
+     */
+    public int[] getRanking() {
+        if (trust == null) {
+            trust = computeTrust();
+        }
+
+        final int[] ranking = dominance.ranking();
+        final int[] ids = new int[ranking.length];
+        for (int i = 0; i < ranking.length; i++) {
+            ids[i] = index.id(ranking[i]);
+        }
+
+        return ids;
+    }
+
+    private Map<Integer, PairwiseOrder> computeTrust() {
         // sum closures into preferences
-        final double[][] preferences = computePreferences(opClosures);
+        computePreferences(opClosures, agents);
 
         // adds experience counts to the matrix of preferences
         // XXX: It seems to not do much
         // addExperiences(preferences, xpClosure, xpCount);
 
-        // find the strongest comparisons
-        final double[][] paths = new double[preferences.length][preferences.length];
-        Matrices.strongestPaths(preferences, paths);
+        // find the strongest comparisons, repairing the previous ones when only a few preferences moved
+        final int n = preferences.size();
+        int changed = 0;
+
+        if (adjacency != null) {
+            for (int cell = 0; cell < n * n && changed <= n / 4; cell++) {
+                if (preferences.data[cell] != adjacency.data[cell]) {
+                    if (changed < changedEdges.length) {
+                        changedEdges[changed] = cell;
+                        changedValues[changed] = preferences.data[cell];
+                    }
+                    changed++;
+                }
+            }
+        }
 
-        final Map<Integer, PairwiseOrder> order = new HashMap<>();
-        for (int agent = 0; agent < paths.length; agent++) {
-            order.put(agent, new PairwiseOrder(agent, paths));
+        if (adjacency == null || changed > n / 4) {
+            adjacency = new DenseMatrix(n);
+            adjacency.copyFrom(preferences);
+            paths = new DenseMatrix(n);
+            Matrices.parallelStrongestPaths(adjacency, paths);
+        } else if (changed > 0) {
+            Matrices.update(adjacency, changedEdges, changedValues, changed, paths);
         }
 
-        return order;
+        // the strongest paths of the Schulze method order agents transitively, so the snapshot ranks them
+        dominance = new Dominance(paths);
+        return PairwiseOrder.snapshot(dominance, index);
     }
 
     /**
@@ -228,11 +537,11 @@ public class Schulze extends AbstractTrustModel<PairwiseOrder> {
      * @param xpClosure   matrix of closures as given by experiences
      * @param xpCount     an array of experience counts
      */
-    private void addExperiences(double[][] preferences, boolean[][] xpClosure, int[] xpCount) {
-        for (int source = 0; source < preferences.length; source++) {
-            for (int target = 0; target < preferences.length; target++) {
+    private void addExperiences(DenseMatrix preferences, boolean[][] xpClosure, int[] xpCount) {
+        for (int source = 0; source < preferences.size(); source++) {
+            for (int target = 0; target < preferences.size(); target++) {
                 if (source != target && xpClosure[source][target]) {
-                    preferences[source][target] += Math.min(xpCount[source], xpCount[target]);
+                    preferences.add(source, target, Math.min(xpCount[source], xpCount[target]));
                 }
             }
         }
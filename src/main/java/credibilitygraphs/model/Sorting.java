@@ -0,0 +1,55 @@
+package credibilitygraphs.model;
+
+/**
+ * Sorting of primitive index arrays by primitive keys, without boxing.
+ */
+final class Sorting {
+    private Sorting() {
+    }
+
+    /**
+     * Sorts the first length indices by ascending keys[index], as ordered by {@link Double#compare(double, double)}.
+     * The sort is stable: indices with equal keys keep their relative order.
+     *
+     * @param buffer scratch space of at least length elements
+     */
+    static void sort(int[] indices, int length, double[] keys, int[] buffer) {
+        sort(indices, length, keys, false, buffer);
+    }
+
+    /**
+     * Sorts like {@link #sort(int[], int, double[], int[])}, but by descending keys when descending is set.
+     * Indices with equal keys keep their relative order in both cases.
+     */
+    static void sort(int[] indices, int length, double[] keys, boolean descending, int[] buffer) {
+        final int sign = descending ? -1 : 1;
+
+        // bottom-up merge sort, alternating between the two arrays
+        int[] from = indices, to = buffer;
+
+        for (int width = 1; width < length; width *= 2) {
+            for (int lo = 0; lo < length; lo += 2 * width) {
+                final int mid = Math.min(lo + width, length), hi = Math.min(lo + 2 * width, length);
+                int i = lo, j = mid, k = lo;
+
+                while (i < mid && j < hi) {
+                    to[k++] = sign * Double.compare(keys[from[j]], keys[from[i]]) < 0 ? from[j++] : from[i++];
+                }
+                while (i < mid) {
+                    to[k++] = from[i++];
+                }
+                while (j < hi) {
+                    to[k++] = from[j++];
+                }
+            }
+
+            final int[] swap = from;
+            from = to;
+            to = swap;
+        }
+
+        if (from != indices) {
+            System.arraycopy(from, 0, indices, 0, length);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package credibilitygraphs.model;
+
+import java.util.Random;
+
+/**
+ * The order in which {@link Orders} revises its KB with the statements of a tick.
+ */
+public interface StatementOrder {
+    /**
+     * From the most to the least supported statement.
+     */
+    StatementOrder DESCENDING = (cells, count, supports, buffer) -> Sorting.sort(cells, count, supports, true, buffer);
+
+    /**
+     * From the least to the most supported statement.
+     */
+    StatementOrder ASCENDING = (cells, count, supports, buffer) -> Sorting.sort(cells, count, supports, false, buffer);
+
+    /**
+     * In a random order, drawn from given generator.
+     */
+    static StatementOrder shuffled(Random random) {
+        return (cells, count, supports, buffer) -> {
+            for (int i = count - 1; i > 0; i--) {
+                final int j = random.nextInt(i + 1);
+                final int cell = cells[i];
+                cells[i] = cells[j];
+                cells[j] = cell;
+            }
+        };
+    }
+
+    /**
+     * Reorders the first count statements.
+     *
+     * @param cells    statements, identified by their cells source * agents + target
+     * @param supports support of statements, indexed by cells
+     * @param buffer   scratch space of at least count elements
+     */
+    void sort(int[] cells, int count, double[] supports, int[] buffer);
+}
@@ -0,0 +1,35 @@
+package credibilitygraphs.model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The max-min kernel on the lanes of the JDK Vector API. The class is compiled only with the
+ * {@code vector} Maven profile, and loaded only if the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+class VectorMaxMinKernel implements MaxMinKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void relax(double[] p, int offsetI, int offsetK, int length, double ik) {
+        final DoubleVector through = DoubleVector.broadcast(SPECIES, ik);
+        final int bound = SPECIES.loopBound(length);
+
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            final DoubleVector ij = DoubleVector.fromArray(SPECIES, p, offsetI + j);
+            final DoubleVector kj = DoubleVector.fromArray(SPECIES, p, offsetK + j);
+            ij.max(kj.min(through)).intoArray(p, offsetI + j);
+        }
+
+        for (; j < length; j++) {
+            p[offsetI + j] = Math.max(p[offsetI + j], Math.min(ik, p[offsetK + j]));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}
@@ -23,7 +23,12 @@ class CredibilityOrdersTM : TrustModel<PartialOrder<Int, Double, CredibilityObje
 
     private val kbOp = LinkedHashMap<Int, NumericKnowledgeBase>()
 
+    // orders of the current tick; cleared whenever the model receives new data or revises its KB
+    private var trust: Map<Int, PartialOrder<Int, Double, CredibilityObject<Int, Double>>>? = null
+
     override fun processExperiences(newExpriences: List<Experience>) {
+        trust = null
+
         // Idea: incremental KB-EXP creation (instead of making it from dict)
         for (e in newExpriences) {
             val record = experiences.getOrPut(e.agent, { InteractionOutcome() })
@@ -104,6 +109,8 @@ class CredibilityOrdersTM : TrustModel<PartialOrder<Int, Double, CredibilityObje
     }
 
     override fun calculateTrust() {
+        trust = null
+
         val allStatements = mutableListOf<CredibilityObject<Int, Double>>()
 
         for (source in agents) {
@@ -126,6 +133,8 @@ class CredibilityOrdersTM : TrustModel<PartialOrder<Int, Double, CredibilityObje
     }
 
     override fun processOpinions(opinions: List<Opinion>) {
+        trust = null
+
         for (agent in agents) {
             // all opinions from given agent, sorted by internal trust degrees
             val relevant = opinions.asSequence()
@@ -146,9 +155,11 @@ class CredibilityOrdersTM : TrustModel<PartialOrder<Int, Double, CredibilityObje
     }
 
     override fun getTrust(service: Int): Map<Int, PartialOrder<Int, Double, CredibilityObject<Int, Double>>> {
-        return kbExp.graph.vertexSet().asSequence()
+        // the orders do not depend on the service; compute them once per tick
+        return trust ?: kbExp.graph.vertexSet().asSequence()
                 .map { it.toInt() to PartialOrder(it, kbExp) }
                 .toMap()
+                .also { trust = it }
 
         // return HashMap()
         // remove EXP vertex
@@ -162,6 +173,7 @@ class CredibilityOrdersTM : TrustModel<PartialOrder<Int, Double, CredibilityObje
 
     override fun setAgents(agents: List<Int>) {
         this.agents = agents
+        trust = null
     }
 
     override fun toString(): String = "Credibility Orders"
@@ -170,6 +182,7 @@ class CredibilityOrdersTM : TrustModel<PartialOrder<Int, Double, CredibilityObje
 
     override fun setCurrentTime(current: Int) {
         time = current
+        trust = null
     }
 
     override fun initialize(vararg params: Any) = Unit
@@ -0,0 +1,134 @@
+package credibilitygraphs.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+
+public class AgentIndexTest {
+
+    @Test
+    public void appends() {
+        final AgentIndex index = new AgentIndex();
+
+        Assert.assertNull(index.update(Arrays.asList(9000, 3)));
+        Assert.assertNull(index.update(Arrays.asList(3, 9000, 9001)));
+
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(0, index.indexOf(3));
+        Assert.assertEquals(1, index.indexOf(9000));
+        Assert.assertEquals(2, index.indexOf(9001));
+        Assert.assertEquals(-1, index.indexOf(7));
+        Assert.assertEquals(9000, index.id(1));
+    }
+
+    @Test
+    public void insertsInIdOrder() {
+        final AgentIndex index = new AgentIndex();
+        index.update(Arrays.asList(3, 9000));
+
+        final int[] moves = index.update(Arrays.asList(3, 9000, 42, 1));
+
+        Assert.assertArrayEquals(new int[]{1, 3}, moves);
+        Assert.assertEquals(4, index.size());
+        for (int i = 0; i < index.size(); i++) {
+            Assert.assertEquals(i, index.indexOf(index.id(i)));
+        }
+        Assert.assertEquals(1, index.id(0));
+        Assert.assertEquals(3, index.id(1));
+        Assert.assertEquals(42, index.id(2));
+        Assert.assertEquals(9000, index.id(3));
+    }
+
+    @Test
+    public void compacts() {
+        final AgentIndex index = new AgentIndex();
+        index.update(Arrays.asList(0, 1, 2, 3, 4));
+
+        final int[] moves = index.update(Arrays.asList(0, 2, 4, 5));
+
+        Assert.assertArrayEquals(new int[]{0, -1, 1, -1, 2}, moves);
+        Assert.assertEquals(4, index.size());
+        Assert.assertEquals(-1, index.indexOf(1));
+        Assert.assertEquals(2, index.indexOf(4));
+        Assert.assertEquals(3, index.indexOf(5));
+        Assert.assertEquals(5, index.id(3));
+    }
+
+    @Test
+    public void compactsArrays() {
+        final int[] moves = {0, -1, 1, -1, 2};
+
+        final double[][] matrix = new double[6][6];
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                matrix[i][j] = 10 * i + j;
+            }
+        }
+        AgentIndex.move(matrix, moves, 3, Double.NaN);
+
+        final double[][] expected = {
+                {0, 2, 4, Double.NaN, Double.NaN, 0},
+                {20, 22, 24, Double.NaN, Double.NaN, 0},
+                {40, 42, 44, Double.NaN, Double.NaN, 0},
+                {Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 0},
+                {Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 0},
+                {0, 0, 0, 0, 0, 0}
+        };
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertArrayEquals(expected[i], matrix[i], 0);
+        }
+
+        final DenseMatrix dense = new DenseMatrix(5);
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                dense.set(i, j, 10 * i + j);
+            }
+        }
+        dense.move(moves, 3);
+
+        Assert.assertArrayEquals(new double[][]{{0, 2, 4}, {20, 22, 24}, {40, 42, 44}}, dense.toArray());
+    }
+
+    @Test
+    public void movesArrays() {
+        // one agent leaves, and two join before and between the others
+        final int[] moves = {1, -1, 3};
+
+        final double[][] matrix = new double[5][5];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                matrix[i][j] = 10 * i + j;
+            }
+        }
+        AgentIndex.move(matrix, moves, 4, Double.NaN);
+
+        final double n = Double.NaN;
+        final double[][] expected = {
+                {n, n, n, n, 0},
+                {n, 0, n, 2, 0},
+                {n, n, n, n, 0},
+                {n, 20, n, 22, 0},
+                {0, 0, 0, 0, 0}
+        };
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertArrayEquals(expected[i], matrix[i], 0);
+        }
+
+        final Integer[] objects = {7, 8, 9, null};
+        AgentIndex.move(objects, moves, 4);
+        Assert.assertArrayEquals(new Integer[]{null, 7, null, 9}, objects);
+
+        final DenseMatrix dense = new DenseMatrix(3);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                dense.set(i, j, 10 * i + j + 1);
+            }
+        }
+        dense.move(moves, 4);
+
+        Assert.assertArrayEquals(new double[][]{{0, 0, 0, 0}, {0, 1, 0, 3}, {0, 0, 0, 0}, {0, 21, 0, 23}},
+                dense.toArray());
+    }
+}
@@ -0,0 +1,193 @@
+package credibilitygraphs.model;
+
+import atb.interfaces.Experience;
+import atb.interfaces.Opinion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MatricesPerformance {
+
+    private static final int[] SIZES = {50, 100, 200, 400};
+    private static final int REPETITIONS = 20;
+
+    /**
+     * Runs the benchmark named by the first argument: kernels (the default), blocked, contraction or warmStart.
+     */
+    public static void main(String[] args) {
+        switch (args.length > 0 ? args[0] : "kernels") {
+            case "blocked":
+                blocked();
+                break;
+            case "contraction":
+                contraction();
+                break;
+            case "warmStart":
+                warmStart();
+                break;
+            default:
+                kernels();
+        }
+    }
+
+    /**
+     * Compares revision from scratch in every tick against warm-started revision, when the inputs repeat
+     * in every tick and when a few agents are experienced and a few reporters change their opinions
+     * in every tick. The first ticks, in which the histories of past experiences fill up, are a warm-up.
+     */
+    private static void warmStart() {
+        for (boolean repeated : new boolean[]{true, false}) {
+            for (int size : new int[]{50, 100, 200}) {
+                final List<Integer> agents = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    agents.add(i);
+                }
+
+                for (int rebuildInterval : new int[]{0, 5, 20}) {
+                    final Orders model = new Orders(rebuildInterval);
+                    final Random random = new Random(size);
+                    final double[][] opinions = new double[size][size];
+                    long total = 0;
+
+                    for (int time = 1; time <= 40; time++) {
+                        final List<Experience> experiences = new ArrayList<>();
+                        for (int k = 0; k < 3; k++) {
+                            final int agent = repeated ? k : random.nextInt(size);
+                            experiences.add(new Experience(agent, 0, time, agent / (double) size));
+                        }
+
+                        final List<Opinion> tickOpinions = new ArrayList<>();
+                        for (int reporter = 0; reporter < size; reporter++) {
+                            final boolean changes = time == 1 || !repeated && random.nextInt(20) == 0;
+                            for (int agent = 0; agent < size; agent++) {
+                                if (changes) {
+                                    opinions[reporter][agent] = Math.round(10 * (agent / (double) size
+                                            + random.nextGaussian() * 0.2)) / 10d;
+                                }
+                                tickOpinions.add(new Opinion(reporter, agent, 0, time, opinions[reporter][agent], 0));
+                            }
+                        }
+
+                        model.setCurrentTime(time);
+                        model.setAgents(agents);
+                        model.processExperiences(experiences);
+                        model.processOpinions(tickOpinions);
+
+                        final long start = System.nanoTime();
+                        model.getTrust(0);
+                        final long stop = System.nanoTime();
+
+                        if (time > 20) {
+                            total += stop - start;
+                        }
+                    }
+
+                    System.out.printf("%s, n = %4d, rebuild interval = %2d: %9.3f ms per tick%n",
+                            repeated ? "repeated" : "changing", size, rebuildInterval, total / 1e6 / 20);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the scalar max-min kernel against the loaded one, which is vectorized when the JVM
+     * runs with --add-modules jdk.incubator.vector.
+     */
+    private static void kernels() {
+        final MaxMinKernel[] kernels = {new ScalarMaxMinKernel(), Matrices.KERNEL};
+
+        for (int size : new int[]{100, 500, 2000}) {
+            final DenseMatrix adjacency = DenseMatrix.of(RandomGraphs.randomDAG(size, new Random(size)));
+            final DenseMatrix strongestPaths = new DenseMatrix(size);
+            final int tileSize = size < Matrices.BLOCKED_THRESHOLD ? size : Matrices.TILE_SIZE;
+            final int repetitions = size < 200 ? 200 : size < 1000 ? 20 : 3;
+
+            for (MaxMinKernel kernel : kernels) {
+                long total = 0;
+
+                for (int i = 0; i < repetitions; i++) {
+                    final long start = System.nanoTime();
+                    Matrices.strongestPaths(adjacency, strongestPaths, tileSize, kernel);
+                    final long stop = System.nanoTime();
+
+                    // the first run is a warm-up
+                    if (i > 0) {
+                        total += stop - start;
+                    }
+                }
+
+                System.out.printf("n = %4d, %s: %10.3f ms%n", size, kernel, total / 1e6 / (repetitions - 1));
+            }
+        }
+    }
+
+    /**
+     * Compares the plain Floyd--Warshall algorithm against the blocked one with different tile sizes.
+     */
+    private static void blocked() {
+        for (int size : new int[]{128, 256, 512, 1024}) {
+            final DenseMatrix adjacency = DenseMatrix.of(RandomGraphs.randomDAG(size, new Random(size)));
+            final DenseMatrix strongestPaths = new DenseMatrix(size);
+
+            for (int tileSize : new int[]{size, 64, 128, 256}) {
+                long total = 0;
+
+                for (int i = 0; i < 5; i++) {
+                    final long start = System.nanoTime();
+                    Matrices.strongestPaths(adjacency, strongestPaths, tileSize);
+                    final long stop = System.nanoTime();
+
+                    // the first run is a warm-up
+                    if (i > 0) {
+                        total += stop - start;
+                    }
+                }
+
+                System.out.printf("n = %4d, tile = %4d: %9.3f ms%n", size, tileSize, total / 1e6 / 4);
+            }
+        }
+    }
+
+    /**
+     * Compares the dynamic contraction against contraction followed by rerunning the strongest paths procedure.
+     */
+    private static void contraction() {
+        for (int size : SIZES) {
+            long totalDynamic = 0, totalRerun = 0;
+
+            for (int seed = 0; seed < REPETITIONS; seed++) {
+                final Random random = new Random(seed);
+                final DenseMatrix adjacency = DenseMatrix.of(RandomGraphs.randomDAG(size, random));
+                final DenseMatrix strongestPaths = new DenseMatrix(size);
+                Matrices.strongestPaths(adjacency, strongestPaths);
+
+                // contract a random existing path
+                int source, target;
+                do {
+                    source = random.nextInt(size);
+                    target = random.nextInt(size);
+                } while (strongestPaths.get(source, target) == 0);
+
+                final DenseMatrix dynamicAdjacency = RandomGraphs.copy(adjacency);
+                final DenseMatrix dynamicPaths = RandomGraphs.copy(strongestPaths);
+
+                long start = System.nanoTime();
+                Matrices.contract(dynamicAdjacency, source, target, dynamicPaths);
+                long stop = System.nanoTime();
+                totalDynamic += stop - start;
+
+                // only the rerun is timed, the removal of edges is the same in both cases
+                final DenseMatrix rerunPaths = new DenseMatrix(size);
+                Matrices.contract(adjacency, source, target, RandomGraphs.copy(strongestPaths));
+                start = System.nanoTime();
+                Matrices.strongestPaths(adjacency, rerunPaths);
+                stop = System.nanoTime();
+                totalRerun += stop - start;
+            }
+
+            System.out.printf("n = %4d: dynamic %8.3f ms, rerun %8.3f ms%n", size,
+                    totalDynamic / 1e6 / REPETITIONS, totalRerun / 1e6 / REPETITIONS);
+        }
+    }
+}
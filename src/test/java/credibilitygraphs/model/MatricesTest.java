@@ -4,22 +4,24 @@ import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.nio.LongBuffer;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class MatricesTest {
 
     @Test
     public void closure() {
-        final double[][] adjacency = new double[][]{
+        final DenseMatrix adjacency = DenseMatrix.of(new double[][]{
                 {0, 2, 2, 2, 0},
                 {0, 0, 3, 0, 1},
                 {0, 0, 0, 0, 2},
                 {0, 0, 3, 0, 4},
                 {0, 0, 0, 0, 0}
-        };
-        final double[][] strongestPaths = new double[adjacency.length][adjacency.length];
+        });
+        final DenseMatrix strongestPaths = new DenseMatrix(adjacency.size());
         final double[][] expected = new double[][]{
                 {0, 2, 2, 2, 2},
                 {0, 0, 3, 0, 2},
@@ -30,24 +32,180 @@ public class MatricesTest {
 
         Matrices.strongestPaths(adjacency, strongestPaths);
 
-        Assert.assertArrayEquals(expected, strongestPaths);
+        Assert.assertArrayEquals(expected, strongestPaths.toArray());
+    }
+
+    @Test
+    public void blockedClosure() {
+        for (int nodes : new int[]{1, 7, 64, 100, 130}) {
+            final Random random = new Random(nodes);
+            final DenseMatrix graph = DenseMatrix.of(RandomGraphs.randomGraph(nodes, 0.1, null, random));
+
+            final DenseMatrix expected = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, expected, nodes);
+
+            for (int tileSize : new int[]{1, 5, 16, 64}) {
+                final DenseMatrix blocked = new DenseMatrix(nodes);
+                Matrices.strongestPaths(graph, blocked, tileSize);
+                Assert.assertArrayEquals(expected.data, blocked.data, 0);
+            }
+        }
+    }
+
+    @Test
+    public void parallelClosure() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        for (int nodes : new int[]{1, 7, 64, 100, 130}) {
+            final Random random = new Random(nodes);
+            final DenseMatrix graph = DenseMatrix.of(RandomGraphs.randomGraph(nodes, 0.1, null, random));
+
+            final DenseMatrix expected = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, expected);
+
+            for (int tileSize : new int[]{1, 5, 16, 64}) {
+                final DenseMatrix parallel = new DenseMatrix(nodes);
+                Matrices.parallelStrongestPaths(graph, parallel, pool, tileSize);
+                Assert.assertArrayEquals(expected.data, parallel.data, 0);
+            }
+        }
+
+        pool.shutdown();
+    }
+
+    @Test
+    public void kernels() {
+        // the vector profile runs the tests with the incubator module, so the kernel must load
+        if (Boolean.getBoolean("credibilitygraphs.vectorKernel")) {
+            Assert.assertEquals("credibilitygraphs.model.VectorMaxMinKernel",
+                    Matrices.KERNEL.getClass().getName());
+        }
+
+        final Random random = new Random(0);
+        final MaxMinKernel scalar = new ScalarMaxMinKernel();
+
+        for (int length : new int[]{1, 3, 8, 17, 100}) {
+            final double[] data = new double[2 * length + 3];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = random.nextInt(4) == 0 ? 0 : random.nextDouble();
+            }
+            final double[] expected = data.clone();
+
+            scalar.relax(expected, 1, length + 2, length, 0.5);
+            Matrices.KERNEL.relax(data, 1, length + 2, length, 0.5);
+
+            Assert.assertArrayEquals(expected, data, 0);
+        }
+    }
+
+    @Test
+    public void support() {
+        for (int nodes : new int[]{1, 7, 130, 300}) {
+            final Random random = new Random(nodes);
+            final double[][] opinions = new double[nodes + 2][nodes + 2];
+            final double[] weights = new double[nodes + 2];
+            for (int r = 0; r < nodes; r++) {
+                weights[r] = random.nextInt(5) == 0 ? 0 : random.nextDouble();
+                for (int i = 0; i < nodes; i++) {
+                    opinions[r][i] = random.nextInt(5) == 0 ? Double.NaN : random.nextInt(4);
+                }
+            }
+
+            final DenseMatrix support = new DenseMatrix(nodes);
+            Matrices.support(opinions, weights, support);
+
+            for (int i = 0; i < nodes; i++) {
+                for (int j = 0; j < nodes; j++) {
+                    double expected = 0;
+                    for (int r = 0; r < nodes; r++) {
+                        if (opinions[r][i] < opinions[r][j]) {
+                            expected += weights[r];
+                        }
+                    }
+                    Assert.assertEquals(expected, support.get(i, j), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void packedClosure() {
+        for (int nodes : new int[]{1, 5, 63, 64, 65, 130}) {
+            final Random random = new Random(nodes);
+            final boolean[][] adjacency = new boolean[nodes][nodes];
+            for (int i = 0; i < nodes; i++) {
+                for (int j = 0; j < nodes; j++) {
+                    adjacency[i][j] = random.nextDouble() < 1.5 / nodes;
+                }
+            }
+
+            // naive closure
+            final boolean[][] expected = new boolean[nodes][];
+            for (int i = 0; i < nodes; i++) {
+                expected[i] = adjacency[i].clone();
+            }
+            for (int k = 0; k < nodes; k++) {
+                for (int i = 0; i < nodes; i++) {
+                    for (int j = 0; j < nodes; j++) {
+                        expected[i][j] = expected[i][j] || (expected[i][k] && expected[k][j]);
+                    }
+                }
+            }
+
+            final boolean[][] closure = new boolean[nodes][nodes];
+            Matrices.closure(adjacency, closure);
+            Assert.assertArrayEquals(expected, closure);
+
+            final long[][] packed = new long[nodes][Bits.words(nodes)];
+            Matrices.closure(Bits.pack(adjacency), packed);
+            Assert.assertArrayEquals(Bits.pack(expected), packed);
+
+            for (boolean offHeap : new boolean[]{false, true}) {
+                final BitCube cube = new BitCube(nodes + 3, offHeap);
+                for (int i = 0; i < nodes; i++) {
+                    for (int j = 0; j < nodes; j++) {
+                        if (adjacency[i][j]) {
+                            cube.set(0, i, j);
+                        }
+                    }
+                }
+                Matrices.closure(cube.matrix(0), cube.matrix(1), cube.words, nodes);
+                for (int i = 0; i < nodes; i++) {
+                    for (int j = 0; j < nodes + 3; j++) {
+                        Assert.assertEquals(j < nodes && expected[i][j], cube.get(1, i, j));
+                    }
+                }
+
+                // a dropped matrix is reused by the next reporter, empty
+                final LongBuffer dropped = cube.matrix(1);
+                cube.drop(1);
+                Assert.assertFalse(cube.contains(1));
+                Assert.assertSame(dropped, cube.matrix(2));
+                for (int i = 0; i < nodes; i++) {
+                    for (int j = 0; j < nodes + 3; j++) {
+                        Assert.assertFalse(cube.get(2, i, j));
+                    }
+                }
+                cube.release();
+            }
+        }
     }
 
     @Test
     public void expansionOK() {
-        final double[][] adjacency = new double[][]{
+        final DenseMatrix adjacency = DenseMatrix.of(new double[][]{
                 {0, 2, 0, 0, 0},
                 {0, 0, 1, 0, 0},
                 {0, 0, 0, 2, 0},
                 {0, 0, 0, 0, 2},
                 {0, 0, 0, 0, 0}
-        };
-        final double[][] strongestPaths = new double[adjacency.length][adjacency.length];
+        });
+        final DenseMatrix strongestPaths = new DenseMatrix(adjacency.size());
         Matrices.strongestPaths(adjacency, strongestPaths);
 
         Matrices.expand(adjacency, 1, 3, 2, strongestPaths);
 
-        Assert.assertEquals(adjacency[1][3], 2, 0.0001);
+        Assert.assertEquals(adjacency.get(1, 3), 2, 0.0001);
         final double[][] expectedStrongestPaths = new double[][]{
                 {0, 2, 1, 2, 2},
                 {0, 0, 1, 2, 2},
@@ -56,19 +214,50 @@ public class MatricesTest {
                 {0, 0, 0, 0, 0}
         };
 
-        Assert.assertArrayEquals(expectedStrongestPaths, strongestPaths);
+        Assert.assertArrayEquals(expectedStrongestPaths, strongestPaths.toArray());
+    }
+
+    @Test
+    public void expansionOverwritesEdge() {
+        final DenseMatrix adjacency = DenseMatrix.of(new double[][]{
+                {0, 2, 0, 0},
+                {0, 0, 3, 0},
+                {0, 0, 0, 2},
+                {0, 0, 0, 0}
+        });
+        final DenseMatrix strongestPaths = new DenseMatrix(adjacency.size());
+        Matrices.strongestPaths(adjacency, strongestPaths);
+        final double[][] previous = strongestPaths.toArray();
+
+        // the edge is overwritten, but the paths through it keep their strength
+        Matrices.expand(adjacency, 1, 2, 1, strongestPaths);
+
+        Assert.assertEquals(adjacency.get(1, 2), 1, 0.0001);
+        Assert.assertArrayEquals(previous, strongestPaths.toArray());
+        Assert.assertTrue(strongestPaths.stale);
+
+        // a contraction then computes all paths again
+        Matrices.contract(adjacency, 2, 3, strongestPaths);
+
+        Assert.assertArrayEquals(new double[][]{
+                {0, 2, 1, 0},
+                {0, 0, 1, 0},
+                {0, 0, 0, 0},
+                {0, 0, 0, 0}
+        }, strongestPaths.toArray());
+        Assert.assertFalse(strongestPaths.stale);
     }
 
     @Test(expected = Error.class)
     public void expansionAborted() {
-        final double[][] adjacency = new double[][]{
+        final DenseMatrix adjacency = DenseMatrix.of(new double[][]{
                 {0, 2, 0, 0, 0},
                 {0, 0, 1, 0, 0},
                 {0, 0, 0, 2, 0},
                 {0, 0, 0, 0, 2},
                 {0, 0, 0, 0, 0}
-        };
-        final double[][] strongestPaths = new double[adjacency.length][adjacency.length];
+        });
+        final DenseMatrix strongestPaths = new DenseMatrix(adjacency.size());
         Matrices.strongestPaths(adjacency, strongestPaths);
 
         Matrices.expand(adjacency, 1, 0, 3, strongestPaths);
@@ -76,15 +265,15 @@ public class MatricesTest {
 
     @Test
     public void contractionOK() {
-        final double[][] adjacency = new double[][]{
+        final DenseMatrix adjacency = DenseMatrix.of(new double[][]{
                 {0, 2, 0, 0, 0, 0},
                 {0, 0, 1, 2, 0, 1.25},
                 {0, 0, 0, 0, 2, 0},
                 {0, 0, 1.5, 0, 1, 0},
                 {0, 0, 0, 0, 0, 0},
                 {0, 0, 1, 0, 0, 0}
-        };
-        final double[][] strongestPaths = new double[adjacency.length][adjacency.length];
+        });
+        final DenseMatrix strongestPaths = new DenseMatrix(adjacency.size());
         Matrices.strongestPaths(adjacency, strongestPaths);
 
         Matrices.contract(adjacency, 0, 4, strongestPaths);
@@ -106,28 +295,249 @@ public class MatricesTest {
                 {0, 0, 0, 0, 0, 0}
         };
 
-        Assert.assertArrayEquals(expectedAdjacency, adjacency);
-        Assert.assertArrayEquals(expectedStrongestPaths, strongestPaths);
+        Assert.assertArrayEquals(expectedAdjacency, adjacency.toArray());
+        Assert.assertArrayEquals(expectedStrongestPaths, strongestPaths.toArray());
     }
 
     @Test
     public void contractionRemoveAllEdges() {
-        final double[][] adjacency = new double[][]{
+        final DenseMatrix adjacency = DenseMatrix.of(new double[][]{
                 {0, 1, 0},
                 {0, 0, 1},
                 {0, 0, 0},
-        };
-        final double[][] strongestPaths = new double[adjacency.length][adjacency.length];
+        });
+        final DenseMatrix strongestPaths = new DenseMatrix(adjacency.size());
         Matrices.strongestPaths(adjacency, strongestPaths);
 
         Matrices.contract(adjacency, 0, 2, strongestPaths);
 
         // both matrices should contain only zeros
-        final double[][] expectedAdjacency = new double[adjacency.length][adjacency.length];
-        final double[][] expectedStrongestPaths = new double[adjacency.length][adjacency.length];
+        final double[][] expectedAdjacency = new double[adjacency.size()][adjacency.size()];
+        final double[][] expectedStrongestPaths = new double[adjacency.size()][adjacency.size()];
+
+        Assert.assertArrayEquals(expectedAdjacency, adjacency.toArray());
+        Assert.assertArrayEquals(expectedStrongestPaths, strongestPaths.toArray());
+    }
+
+    @Test
+    public void contractionRandomTests() {
+        final int nodes = 15;
+        final double edgeProbability = 0.5;
+        final int totalRuns = 2000;
+
+        for (int seed = 0; seed < totalRuns; seed++) {
+            final Random random = new Random(seed);
+
+            // create a random graph, cycles included
+            final DenseMatrix graph = DenseMatrix.of(
+                    RandomGraphs.randomGraph(nodes, edgeProbability / 2, null, random));
+            final DenseMatrix strongestPaths = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, strongestPaths);
+
+            final int source = random.nextInt(nodes);
+            final int target = random.nextInt(nodes);
+
+            // contraction
+            Matrices.contract(graph, source, target, strongestPaths);
+
+            // recheck by manually running the strongest paths algorithm
+            final DenseMatrix recheckSP = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, recheckSP);
+
+            if (!Arrays.equals(strongestPaths.data, recheckSP.data)) {
+                Assert.fail(String.format("Matrix mismatch: seed = %d, [%d < %d]", seed, source, target));
+            }
+        }
+    }
+
+    @Test
+    public void expansionSparseRandomTests() {
+        final int nodes = 30;
+        final int totalRuns = 2000;
+
+        for (int seed = 0; seed < totalRuns; seed++) {
+            final Random random = new Random(seed);
+
+            // create a random sparse DAG over a random ranking
+            final int[] ranking = RandomGraphs.randomRanking(nodes, random);
+            final double edgeProbability = random.nextDouble() * 0.2;
+            final DenseMatrix graph = DenseMatrix.of(
+                    RandomGraphs.randomGraph(nodes, edgeProbability, ranking, random));
+            final DenseMatrix strongestPaths = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, strongestPaths);
+
+            int source, target;
+            do {
+                source = random.nextInt(nodes);
+                target = random.nextInt(nodes);
+            } while (ranking[source] >= ranking[target]);
+
+            final double value = Math.round(random.nextDouble() * 9.99);
+            final boolean overwrites = graph.get(source, target) > value;
+            final double[] before = strongestPaths.data.clone();
+
+            Matrices.expand(graph, source, target, value, strongestPaths);
+
+            // a weaker edge is overwritten, but its paths are kept until they are computed again
+            final DenseMatrix recheckSP = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, recheckSP);
+            final double[] expected = overwrites ? before : recheckSP.data;
+
+            Assert.assertEquals(overwrites, strongestPaths.stale);
+            if (!Arrays.equals(strongestPaths.data, expected)) {
+                Assert.fail(String.format("Matrix mismatch: seed = %d, [%d < %d]", seed, source, target));
+            }
+        }
+    }
+
+    @Test
+    public void resize() {
+        final Random random = new Random(0);
+        final DenseMatrix matrix = DenseMatrix.of(RandomGraphs.randomDAG(3, random));
+        double[][] expected = matrix.toArray();
+
+        for (int size = 4; size < 40; size += 1 + random.nextInt(3)) {
+            final int capacity = matrix.capacity();
+            matrix.resize(size);
+
+            Assert.assertEquals(size, matrix.size());
+            Assert.assertTrue(matrix.capacity() >= size);
+            if (size > capacity) {
+                Assert.assertTrue(matrix.capacity() >= 2 * capacity);
+            }
+
+            final double[][] actual = matrix.toArray();
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    final double value = i < expected.length && j < expected.length ? expected[i][j] : 0;
+                    Assert.assertEquals(value, actual[i][j], 0);
+                }
+            }
+
+            // new contents for the next resize
+            expected = RandomGraphs.randomDAG(size, random);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    matrix.set(i, j, expected[i][j]);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxSize() {
+        // the index of the last element would overflow an int
+        new DenseMatrix(1).resize(DenseMatrix.MAX_SIZE + 1);
+    }
+
+    @Test
+    public void batchExpansion() {
+        final int totalRuns = 1000;
+
+        for (int seed = 0; seed < totalRuns; seed++) {
+            final Random random = new Random(seed);
+            final int nodes = 5 + random.nextInt(26);
+            final DenseMatrix adjacency = DenseMatrix.of(RandomGraphs.randomDAG(nodes, random));
+            final DenseMatrix strongestPaths = new DenseMatrix(nodes);
+            Matrices.strongestPaths(adjacency, strongestPaths);
+
+            // random statements, including contradicting ones, from most to least supported
+            final int count = 1 + random.nextInt(3 * nodes);
+            final int[] sources = new int[count], targets = new int[count];
+            final double[] values = new double[count];
+            double value = 10;
+            for (int i = 0; i < count; i++) {
+                do {
+                    sources[i] = random.nextInt(nodes);
+                    targets[i] = random.nextInt(nodes);
+                } while (sources[i] == targets[i]);
+                value -= random.nextDouble() * 0.5;
+                values[i] = Math.max(value, 0.01);
+            }
+
+            final DenseMatrix singleAdjacency = RandomGraphs.copy(adjacency);
+            final DenseMatrix singlePaths = RandomGraphs.copy(strongestPaths);
+            for (int i = 0; i < count; i++) {
+                revise(singleAdjacency, sources[i], targets[i], values[i], singlePaths);
+            }
+
+            int next = 0;
+            while (next < count) {
+                next = Matrices.expand(adjacency, sources, targets, values, next, count, strongestPaths);
+                if (next < count) {
+                    revise(adjacency, sources[next], targets[next], values[next], strongestPaths);
+                    next++;
+                }
+            }
+
+            if (!Arrays.equals(singleAdjacency.data, adjacency.data)) {
+                Assert.fail(String.format("Adjacency mismatch: seed = %d", seed));
+            }
+            if (!Arrays.equals(singlePaths.data, strongestPaths.data)) {
+                Assert.fail(String.format("Matrix mismatch: seed = %d", seed));
+            }
+        }
+    }
+
+    private static void revise(DenseMatrix adjacency, int source, int target, double value, DenseMatrix paths) {
+        if (paths.get(target, source) == 0) {
+            Matrices.expand(adjacency, source, target, value, paths);
+        } else if (paths.get(target, source) < value) {
+            Matrices.contract(adjacency, target, source, paths);
+            Matrices.expand(adjacency, source, target, value, paths);
+        }
+    }
+
+    @Test
+    public void updateCyclicRandomTests() {
+        final int nodes = 20;
+
+        for (int seed = 0; seed < 500; seed++) {
+            final Random random = new Random(seed);
+
+            // create a random graph with cycles, like the preferences of the Schulze method
+            final double edgeProbability = random.nextDouble() * 0.5;
+            final DenseMatrix graph = DenseMatrix.of(
+                    RandomGraphs.randomGraph(nodes, edgeProbability, null, random));
+            final DenseMatrix strongestPaths = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, strongestPaths);
+
+            // strengthen, weaken and remove a few distinct edges at once
+            final int count = 1 + random.nextInt(6);
+            final int[] edges = new int[count];
+            final double[] values = new double[count];
+            for (int e = 0; e < count; e++) {
+                int edge;
+                do {
+                    edge = random.nextInt(nodes * nodes);
+                } while (edge / nodes == edge % nodes || contains(edges, e, edge));
+
+                edges[e] = edge;
+                values[e] = random.nextInt(3) == 0 ? 0 : Math.round(random.nextDouble() * 9.99);
+            }
+
+            Matrices.update(graph, edges, values, count, strongestPaths);
 
-        Assert.assertArrayEquals(expectedAdjacency, adjacency);
-        Assert.assertArrayEquals(expectedStrongestPaths, strongestPaths);
+            for (int e = 0; e < count; e++) {
+                Assert.assertEquals(values[e], graph.data[edges[e]], 0);
+            }
+
+            final DenseMatrix recheckSP = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, recheckSP);
+
+            if (!Arrays.equals(strongestPaths.data, recheckSP.data)) {
+                Assert.fail(String.format("Matrix mismatch: seed = %d", seed));
+            }
+        }
+    }
+
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Ignore
@@ -142,22 +552,13 @@ public class MatricesTest {
             final Random random = new Random(seed);
 
             // create random rankings
-            final int[] ranking = new int[nodes];
-            for (int i = 0; i < ranking.length; i++) {
-                ranking[i] = random.nextInt(nodes * nodes);
-            }
+            final int[] ranking = RandomGraphs.randomRanking(nodes, random);
 
             // create a random DAG
-            final double[][] adjacency = new double[nodes][nodes];
-            for (int source = 0; source < adjacency.length; source++) {
-                for (int target = 0; target < adjacency.length; target++) {
-                    if (ranking[source] < ranking[target] && random.nextDouble() < edgeProbability) {
-                        adjacency[source][target] = random.nextDouble() * maxEdgeValue;
-                    }
-                }
-            }
-            final double[][] strongestPaths = new double[nodes][nodes];
-            Matrices.strongestPaths(adjacency, strongestPaths);
+            final double[][] adjacency = RandomGraphs.randomGraph(nodes, edgeProbability, ranking, random);
+            final DenseMatrix graph = DenseMatrix.of(adjacency);
+            final DenseMatrix strongestPaths = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, strongestPaths);
 
             // add a random node, that will change the graph
             int source, target;
@@ -166,21 +567,16 @@ public class MatricesTest {
                 target = random.nextInt(nodes);
             } while (ranking[source] >= ranking[target]);
 
-            // remember old value
-            final double oldEdgeValue = adjacency[source][target];
-
             // expansion
-            Matrices.expand(adjacency, source, target, maxEdgeValue, strongestPaths);
+            Matrices.expand(graph, source, target, maxEdgeValue, strongestPaths);
 
             // recheck by manually running the strongest paths algorithm
-            final double[][] recheckSP = new double[nodes][nodes];
-            Matrices.strongestPaths(adjacency, recheckSP);
+            final DenseMatrix recheckSP = new DenseMatrix(nodes);
+            Matrices.strongestPaths(graph, recheckSP);
 
             // abort if there's a difference
-            if (!Arrays.deepEquals(strongestPaths, recheckSP)) {
+            if (!Arrays.equals(strongestPaths.data, recheckSP.data)) {
                 System.out.println("ERROR: seed = " + seed);
-                // revert adjacency value
-                adjacency[source][target] = oldEdgeValue;
                 System.out.println(Matrices.printNumpy(adjacency));
                 System.out.println("r1 = np.copy(r0)");
                 System.out.printf("r1[%d, %d] = %.2f%n", source, target, maxEdgeValue);
@@ -0,0 +1,36 @@
+package credibilitygraphs.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class OrderGroupsTest {
+
+    @Test
+    public void canonicalize() {
+        final double[] opinions = {0.5, Double.NaN, -0d, 0.9, 0d, 0.5, 7};
+        new OrderGroups().canonicalize(opinions, 6);
+
+        Assert.assertArrayEquals(new double[]{1, Double.NaN, 0, 2, 0, 1, 7}, opinions, 0);
+    }
+
+    @Test
+    public void group() {
+        final double[][] opinions = {
+                {0.1, 0.5, 0.9},
+                {0.3, 0.4, 0.8},
+                {0.9, 0.5, 0.1},
+                {Double.NaN, 0.2, 0.3},
+                {0.2, 0.4, 0.6},
+                {Double.NaN, 0.5, 0.9},
+        };
+        final OrderGroups groups = new OrderGroups();
+        for (double[] row : opinions) {
+            groups.canonicalize(row, 3);
+        }
+        groups.group(opinions, opinions.length, 3);
+
+        Assert.assertEquals(3, groups.distinct);
+        Assert.assertArrayEquals(new int[]{0, 0, 2, 3, 0, 3}, groups.representatives);
+    }
+}
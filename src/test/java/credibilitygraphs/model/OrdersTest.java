@@ -1,10 +1,15 @@
 package credibilitygraphs.model;
 
 import atb.interfaces.Experience;
+import atb.interfaces.Opinion;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 
 public class OrdersTest {
@@ -52,4 +57,348 @@ public class OrdersTest {
         Assert.assertArrayEquals(past.rights, new int[]{9, 8, 7, 6, 5, 4, 3, 2, 1, 0});
         Assert.assertArrayEquals(past.wrongs, new int[]{9, 8, 7, 6, 5, 4, 3, 2, 1, 0});
     }
+
+    @Test
+    public void decayedSums() {
+        final Random random = new Random(0);
+
+        for (int historyLength : new int[]{Orders.Past.HISTORY_LENGTH, 3, 0}) {
+            final Orders.Past past = new Orders.Past(historyLength);
+            final List<Experience> experiences = new ArrayList<>();
+            final List<Integer> rights = new ArrayList<>();
+
+            for (int time = 1; time <= 50; time++) {
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    final Experience experience = new Experience(0, 0, time, random.nextDouble());
+                    past.addExperience(experience);
+                    experiences.add(0, experience);
+                }
+                if (random.nextBoolean()) {
+                    past.addRight(time);
+                    rights.add(0, time);
+                }
+
+                // naive sums over the considered events
+                double sum = 0, weights = 0, rightWeights = 0;
+                for (int i = 0; i < experiences.size() && (historyLength == 0 || i < historyLength); i++) {
+                    final double w = Math.exp(-0.1 * (time - experiences.get(i).time));
+                    sum += w * experiences.get(i).outcome;
+                    weights += w;
+                }
+                for (int i = 0; i < rights.size() && (historyLength == 0 || i < historyLength); i++) {
+                    rightWeights += Math.exp(-0.1 * (time - rights.get(i)));
+                }
+
+                // a bounded history sums exactly as the naive loop does
+                final double delta = historyLength == 0 ? 1e-9 : 0;
+                Assert.assertEquals(weights == 0 ? 0 : sum / weights, past.experienceAverage(time), delta);
+                Assert.assertEquals(weights, past.experienceWeight(time), delta);
+                Assert.assertEquals(rightWeights, past.weightedRights(time), delta);
+                Assert.assertEquals(0, past.weightedWrongs(time), delta);
+            }
+        }
+    }
+
+    @Test
+    public void decayedSumsIgnoreQueryHistory() {
+        // agents with the same events must tie exactly, however often they were queried before
+        final Orders.Past queried = new Orders.Past(), fresh = new Orders.Past();
+        for (int time = 1; time <= 30; time++) {
+            final Experience experience = new Experience(0, 0, time, (time % 7) / 7d);
+            queried.addExperience(experience);
+            fresh.addExperience(experience);
+            queried.addRight(time);
+            fresh.addRight(time);
+
+            queried.experienceAverage(time);
+            queried.weightedRights(time + 3);
+        }
+
+        Assert.assertEquals(fresh.experienceAverage(31), queried.experienceAverage(31), 0);
+        Assert.assertEquals(fresh.experienceWeight(31), queried.experienceWeight(31), 0);
+        Assert.assertEquals(fresh.weightedRights(31), queried.weightedRights(31), 0);
+    }
+
+    @Test
+    public void emptySlotEndsHistory() {
+        // timestamp 0 marks an empty slot, so the older timestamps are not considered
+        final Orders.Past past = new Orders.Past();
+        past.addRight(5);
+        past.addRight(0);
+        past.addRight(7);
+
+        Assert.assertEquals(1, past.weightedRights(7), 0);
+    }
+
+    @Test
+    public void sparseIds() {
+        final int[] dense = {0, 1, 2, 3, 4};
+        final int[] sparse = {3, 42, 700, 701, 9000};
+        final Orders denseModel = new Orders(), sparseModel = new Orders();
+        final Random random = new Random(0);
+
+        for (int time = 1; time <= 6; time++) {
+            // the second agent leaves after the third tick
+            final List<Integer> denseAgents = new ArrayList<>(), sparseAgents = new ArrayList<>();
+            for (int i = 0; i < dense.length; i++) {
+                if (i != 1 || time <= 3) {
+                    denseAgents.add(dense[i]);
+                    sparseAgents.add(sparse[i]);
+                }
+            }
+
+            final List<Experience> denseExperiences = new ArrayList<>(), sparseExperiences = new ArrayList<>();
+            final List<Opinion> denseOpinions = new ArrayList<>(), sparseOpinions = new ArrayList<>();
+            for (int i = 0; i < dense.length; i++) {
+                if (!denseAgents.contains(dense[i])) {
+                    continue;
+                }
+
+                final double outcome = random.nextDouble();
+                denseExperiences.add(new Experience(dense[i], 0, time, outcome));
+                sparseExperiences.add(new Experience(sparse[i], 0, time, outcome));
+
+                for (int j = 0; j < dense.length; j++) {
+                    if (denseAgents.contains(dense[j])) {
+                        final double opinion = random.nextInt(5) / 4d;
+                        denseOpinions.add(new Opinion(dense[i], dense[j], 0, time, opinion, 0));
+                        sparseOpinions.add(new Opinion(sparse[i], sparse[j], 0, time, opinion, 0));
+                    }
+                }
+            }
+
+            final Map<Integer, PairwiseOrder> denseTrust = tick(denseModel, time, denseAgents, denseExperiences,
+                    denseOpinions);
+            final Map<Integer, PairwiseOrder> sparseTrust = tick(sparseModel, time, sparseAgents, sparseExperiences,
+                    sparseOpinions);
+
+            Assert.assertEquals(denseAgents.size(), sparseTrust.size());
+            for (int i = 0; i < denseAgents.size(); i++) {
+                for (int j = 0; j < denseAgents.size(); j++) {
+                    Assert.assertEquals(
+                            denseTrust.get(denseAgents.get(i)).compareTo(denseTrust.get(denseAgents.get(j))),
+                            sparseTrust.get(sparseAgents.get(i)).compareTo(sparseTrust.get(sparseAgents.get(j))));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void weakerStatement() {
+        // experiences say 0 < 1 strongly; two reporters weakly say the same, three others say 1 < 0
+        final List<Integer> agents = Arrays.asList(0, 1, 2, 3, 4, 5, 6);
+        final List<Experience> experiences = Arrays.asList(
+                new Experience(0, 0, 1, 0.2), new Experience(1, 0, 1, 0.8));
+        final List<Opinion> opinions = new ArrayList<>();
+        for (int reporter = 2; reporter < 7; reporter++) {
+            final boolean agrees = reporter < 4;
+            opinions.add(new Opinion(reporter, 0, 0, 1, agrees ? 0.25 : 0.75, 0));
+            opinions.add(new Opinion(reporter, 1, 0, 1, agrees ? 0.75 : 0.25, 0));
+        }
+
+        // the weakest statement comes first and overwrites the edge of experiences, but the paths keep
+        // the strength of experiences, so the stronger contrary statement that follows is rejected
+        final Map<Integer, PairwiseOrder> reverse = tick(new OrdersReverse(), 1, agents, experiences, opinions);
+        Assert.assertTrue(reverse.get(0).compareTo(reverse.get(1)) < 0);
+
+        // the contrary statement comes first and loses to experiences; the weaker one then overwrites them
+        final Map<Integer, PairwiseOrder> orders = tick(new Orders(), 1, agents, experiences, opinions);
+        Assert.assertTrue(orders.get(0).compareTo(orders.get(1)) < 0);
+    }
+
+    @Test
+    public void warmStart() {
+        final List<Integer> agents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            agents.add(i);
+        }
+        final Orders fullModel = new Orders(), warmModel = new Orders(2);
+        final Random random = new Random(1);
+        final double[][] opinionValues = new double[agents.size()][agents.size()];
+
+        for (int time = 1; time <= 7; time++) {
+            // without experiences, the credibility of reporters stays the same, and the statements about
+            // an agent that one reporter changed its opinion of are revised
+            final List<Experience> experiences = new ArrayList<>();
+            final int reporter = random.nextInt(agents.size()), agent = random.nextInt(agents.size());
+            opinionValues[reporter][agent] = random.nextInt(5) / 4d;
+
+            final List<Opinion> opinions = new ArrayList<>();
+            for (int i : agents) {
+                for (int j : agents) {
+                    if (time == 1) {
+                        opinionValues[i][j] = random.nextInt(5) / 4d;
+                    }
+                    opinions.add(new Opinion(i, j, 0, time, opinionValues[i][j], 0));
+                }
+            }
+
+            final Map<Integer, PairwiseOrder> fullTrust = tick(fullModel, time, agents, experiences, opinions);
+            final Map<Integer, PairwiseOrder> warmTrust = tick(warmModel, time, agents, experiences, opinions);
+
+            for (int i : agents) {
+                for (int j : agents) {
+                    final int warm = warmTrust.get(i).compareTo(warmTrust.get(j));
+                    Assert.assertEquals(-warm, warmTrust.get(j).compareTo(warmTrust.get(i)));
+
+                    // the KB is revised from scratch on the first tick and every second tick after it
+                    if (time % 2 == 1) {
+                        Assert.assertEquals(fullTrust.get(i).compareTo(fullTrust.get(j)), warm);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void warmStartRepeatedInputs() {
+        final List<Integer> agents = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7);
+        final Orders fullModel = new Orders(), warmModel = new Orders(5);
+        final Random random = new Random(3);
+
+        // the same experiences and opinions in every tick; only some agents are experienced
+        final double[] outcomes = new double[agents.size()];
+        final double[][] opinions = new double[agents.size()][agents.size()];
+        for (int i : agents) {
+            outcomes[i] = random.nextDouble();
+            for (int j : agents) {
+                opinions[i][j] = random.nextInt(5) / 4d;
+            }
+        }
+
+        for (int time = 1; time <= 25; time++) {
+            final List<Experience> experiences = new ArrayList<>();
+            final List<Opinion> tickOpinions = new ArrayList<>();
+            for (int i : agents) {
+                if (i % 3 != 0 || time < 3) {
+                    experiences.add(new Experience(i, 0, time, outcomes[i]));
+                }
+                for (int j : agents) {
+                    tickOpinions.add(new Opinion(i, j, 0, time, opinions[i][j], 0));
+                }
+            }
+
+            final Map<Integer, PairwiseOrder> fullTrust = tick(fullModel, time, agents, experiences, tickOpinions);
+            final Map<Integer, PairwiseOrder> warmTrust = tick(warmModel, time, agents, experiences, tickOpinions);
+
+            // once the histories are full, the inputs stop changing, apart from the decay of the
+            // experiences of agents without new ones, and warm ticks keep the full revision
+            if (time > 15) {
+                for (int i : agents) {
+                    for (int j : agents) {
+                        Assert.assertEquals(fullTrust.get(i).compareTo(fullTrust.get(j)),
+                                warmTrust.get(i).compareTo(warmTrust.get(j)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void memoizedTrust() {
+        final Orders model = new Orders();
+        final List<Integer> agents = Arrays.asList(0, 1, 2);
+        final List<Opinion> opinions = Arrays.asList(new Opinion(0, 1, 0, 1, 0.2, 0), new Opinion(0, 2, 0, 1, 0.8, 0));
+
+        final Map<Integer, PairwiseOrder> trust = tick(model, 1, agents, new ArrayList<>(), opinions);
+        Assert.assertSame(trust, model.getTrust(1));
+
+        model.processOpinions(opinions);
+        Assert.assertNotSame(trust, model.getTrust(0));
+    }
+
+    @Test
+    public void group() {
+        final List<Integer> agents = Arrays.asList(0, 1, 2, 3, 4, 5);
+        final Orders orders = new Orders(), reverse = new OrdersReverse();
+        final OrdersGroup group = new OrdersGroup();
+        final Orders groupOrders = group.add("Orders", StatementOrder.DESCENDING);
+        final Orders groupReverse = group.add("Reverse", StatementOrder.ASCENDING);
+        final Random random = new Random(2);
+        DenseMatrix previous = null;
+
+        for (int time = 1; time <= 5; time++) {
+            final List<Experience> experiences = new ArrayList<>();
+            final List<Opinion> opinions = new ArrayList<>();
+            for (int i : agents) {
+                experiences.add(new Experience(i, 0, time, random.nextDouble()));
+                for (int j : agents) {
+                    opinions.add(new Opinion(i, j, 0, time, random.nextInt(5) / 4d, 0));
+                }
+            }
+
+            final Map<Integer, PairwiseOrder> expected1 = tick(orders, time, agents, experiences, opinions);
+            final Map<Integer, PairwiseOrder> expected2 = tick(reverse, time, agents, experiences, opinions);
+            final Map<Integer, PairwiseOrder> actual1 = tick(groupOrders, time, agents, experiences, opinions);
+            final DenseMatrix support = group.state().support();
+            final Map<Integer, PairwiseOrder> actual2 = tick(groupReverse, time, agents, experiences, opinions);
+
+            // the support is computed once per tick, by the first model
+            Assert.assertSame(support, group.state().support());
+            Assert.assertNotSame(previous, support);
+            previous = support;
+
+            for (int i : agents) {
+                for (int j : agents) {
+                    Assert.assertEquals(expected1.get(i).compareTo(expected1.get(j)),
+                            actual1.get(i).compareTo(actual1.get(j)));
+                    Assert.assertEquals(expected2.get(i).compareTo(expected2.get(j)),
+                            actual2.get(i).compareTo(actual2.get(j)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void groupReinitialized() {
+        final List<Integer> agents = new ArrayList<>(Arrays.asList(0, 1, 2));
+        final Orders orders = new Orders(), reverse = new OrdersReverse();
+        final OrdersGroup group = new OrdersGroup();
+        final Orders groupOrders = group.add("Orders", StatementOrder.DESCENDING);
+        final Orders groupReverse = group.add("Reverse", StatementOrder.ASCENDING);
+        final Random random = new Random(3);
+
+        // every run starts again from the tick in which the previous one ended, with a newcomer
+        for (int run = 0; run < 3; run++) {
+            agents.add(agents.size());
+            for (Orders model : Arrays.asList(orders, reverse, groupOrders, groupReverse)) {
+                model.initialize();
+            }
+
+            for (int time = run + 1; time <= run + 2; time++) {
+                final List<Experience> experiences = new ArrayList<>();
+                final List<Opinion> opinions = new ArrayList<>();
+                for (int i : agents) {
+                    experiences.add(new Experience(i, 0, time, random.nextDouble()));
+                    for (int j : agents) {
+                        opinions.add(new Opinion(i, j, 0, time, random.nextInt(5) / 4d, 0));
+                    }
+                }
+
+                final Map<Integer, PairwiseOrder> expected1 = tick(orders, time, agents, experiences, opinions);
+                final Map<Integer, PairwiseOrder> expected2 = tick(reverse, time, agents, experiences, opinions);
+                final Map<Integer, PairwiseOrder> actual1 = tick(groupOrders, time, agents, experiences, opinions);
+                final Map<Integer, PairwiseOrder> actual2 = tick(groupReverse, time, agents, experiences, opinions);
+
+                for (int i : agents) {
+                    for (int j : agents) {
+                        Assert.assertEquals(expected1.get(i).compareTo(expected1.get(j)),
+                                actual1.get(i).compareTo(actual1.get(j)));
+                        Assert.assertEquals(expected2.get(i).compareTo(expected2.get(j)),
+                                actual2.get(i).compareTo(actual2.get(j)));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<Integer, PairwiseOrder> tick(Orders model, int time, List<Integer> agents,
+                                                    List<Experience> experiences, List<Opinion> opinions) {
+        model.setCurrentTime(time);
+        model.setAgents(agents);
+        model.processExperiences(experiences);
+        model.processOpinions(opinions);
+        model.calculateTrust();
+        return model.getTrust(0);
+    }
 }
@@ -0,0 +1,38 @@
+package credibilitygraphs.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+
+public class PairwiseOrderTest {
+
+    @Test
+    public void snapshot() {
+        final Random random = new Random(0);
+        final AgentIndex index = new AgentIndex();
+        index.update(Arrays.asList(5, 17, 2, 300, 41, 8, 99, 64, 1, 70));
+
+        final DenseMatrix comparisons = new DenseMatrix(index.size());
+        for (int i = 0; i < comparisons.size(); i++) {
+            for (int j = 0; j < comparisons.size(); j++) {
+                // few distinct values, so that many pairs are tied
+                comparisons.set(i, j, i == j ? 0 : random.nextInt(3));
+            }
+        }
+
+        final Map<Integer, PairwiseOrder> orders = PairwiseOrder.snapshot(comparisons, index);
+
+        Assert.assertEquals(index.size(), orders.size());
+        for (int i = 0; i < index.size(); i++) {
+            for (int j = 0; j < index.size(); j++) {
+                Assert.assertEquals(
+                        new PairwiseOrder(i, comparisons).compareTo(new PairwiseOrder(j, comparisons)),
+                        orders.get(index.id(i)).compareTo(orders.get(index.id(j))));
+            }
+        }
+    }
+}
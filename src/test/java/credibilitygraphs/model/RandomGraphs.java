@@ -0,0 +1,52 @@
+package credibilitygraphs.model;
+
+import java.util.Random;
+
+/**
+ * Random graphs for the tests and benchmarks of {@link Matrices}.
+ */
+final class RandomGraphs {
+    private static final double EDGE_PROBABILITY = 0.3;
+
+    private RandomGraphs() {
+    }
+
+    static double[][] randomDAG(int nodes, Random random) {
+        return randomGraph(nodes, EDGE_PROBABILITY, randomRanking(nodes, random), random);
+    }
+
+    /**
+     * A random ranking of nodes, possibly with ties. Edges that go up the ranking form a DAG.
+     */
+    static int[] randomRanking(int nodes, Random random) {
+        final int[] ranking = new int[nodes];
+        for (int i = 0; i < ranking.length; i++) {
+            ranking[i] = random.nextInt(nodes * nodes);
+        }
+        return ranking;
+    }
+
+    /**
+     * A random graph with integer edge weights up to 10. Given a ranking, edges only go up the ranking,
+     * so the graph is a DAG; without one (null), any two distinct nodes may be connected, cycles included.
+     */
+    static double[][] randomGraph(int nodes, double edgeProbability, int[] ranking, Random random) {
+        final double[][] adjacency = new double[nodes][nodes];
+        for (int source = 0; source < nodes; source++) {
+            for (int target = 0; target < nodes; target++) {
+                final boolean allowed = ranking == null ? source != target : ranking[source] < ranking[target];
+                if (allowed && random.nextDouble() < edgeProbability) {
+                    adjacency[source][target] = Math.round(random.nextDouble() * 9.99);
+                }
+            }
+        }
+
+        return adjacency;
+    }
+
+    static DenseMatrix copy(DenseMatrix matrix) {
+        final DenseMatrix copy = new DenseMatrix(matrix.size());
+        copy.copyFrom(matrix);
+        return copy;
+    }
+}
@@ -0,0 +1,223 @@
+package credibilitygraphs.model;
+
+import atb.interfaces.Experience;
+import atb.interfaces.Opinion;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+public class SchulzeTest {
+
+    @Test
+    public void skipsUnchangedReporters() {
+        final Schulze model = new Schulze();
+        final List<Integer> agents = Arrays.asList(0, 1, 2);
+
+        Map<Integer, PairwiseOrder> trust = null;
+        for (int time = 1; time <= 3; time++) {
+            final List<Opinion> opinions = new ArrayList<>();
+            for (int reporter : agents) {
+                // the last reporter changes its mind in the third tick
+                final boolean reversed = reporter == 2 && time == 3;
+                for (int agent : agents) {
+                    opinions.add(new Opinion(reporter, agent, 0, time, reversed ? 1 - agent / 2d : agent / 2d, 0));
+                }
+            }
+
+            model.setCurrentTime(time);
+            model.setAgents(agents);
+            model.processExperiences(new ArrayList<>());
+            model.processOpinions(opinions);
+            trust = model.getTrust(0);
+        }
+
+        Assert.assertEquals(3 + 2, model.getSkippedReporters());
+        Assert.assertTrue(trust.get(0).compareTo(trust.get(2)) < 0);
+    }
+
+    @Test
+    public void sharesIdenticalOrders() {
+        final List<Integer> agents = Arrays.asList(0, 1, 2, 3);
+        final Schulze model = new Schulze(), reference = new Schulze();
+
+        final List<Opinion> opinions = new ArrayList<>();
+        for (int reporter : agents) {
+            for (int agent : agents) {
+                // two reporters scale the same order, the others reverse it
+                final double opinion = reporter < 2 ? (reporter + 1) * agent / 10d : 1 - agent / 4d;
+                opinions.add(new Opinion(reporter, agent, 0, 1, opinion, 0));
+            }
+        }
+
+        for (Schulze m : new Schulze[]{model, reference}) {
+            m.setCurrentTime(1);
+            m.setAgents(agents);
+            m.processExperiences(new ArrayList<>());
+        }
+        model.processOpinions(opinions);
+        reference.processOpinions(opinions.subList(0, 4));
+
+        Assert.assertEquals(2, model.getDistinctOrders());
+
+        // equal groups of opposite orders cancel out
+        final Map<Integer, PairwiseOrder> trust = model.getTrust(0);
+        for (int i : agents) {
+            for (int j : agents) {
+                Assert.assertEquals(0, trust.get(i).compareTo(trust.get(j)));
+            }
+        }
+        Assert.assertTrue(reference.getTrust(0).get(0).compareTo(reference.getTrust(0).get(3)) < 0);
+    }
+
+    @Test
+    public void updatesPreferences() {
+        final int n = 30;
+        final Random random = new Random(0);
+        final List<Integer> agents = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            agents.add(i);
+        }
+
+        // every reporter ranks agents by a random permutation
+        final int[][] ranks = new int[n][n];
+        shuffle(ranks, random);
+
+        final Schulze model = new Schulze();
+        for (int time = 1; time <= 20; time++) {
+            // now and then, all reporters change their minds, which moves most preferences
+            if (time % 7 == 0) {
+                shuffle(ranks, random);
+            }
+
+            // a few reporters swap two adjacent agents, which moves only a few preferences
+            for (int k = random.nextInt(3); k > 0; k--) {
+                final int reporter = random.nextInt(n), a = random.nextInt(n);
+                int b = 0;
+                while (ranks[reporter][b] != (ranks[reporter][a] + 1) % n) {
+                    b++;
+                }
+                final int swap = ranks[reporter][a];
+                ranks[reporter][a] = ranks[reporter][b];
+                ranks[reporter][b] = swap;
+            }
+
+            final List<Opinion> opinions = new ArrayList<>();
+            for (int reporter : agents) {
+                for (int agent : agents) {
+                    opinions.add(new Opinion(reporter, agent, 0, time, ranks[reporter][agent] / (double) n, 0));
+                }
+            }
+
+            // without experiences, a new model computes the same orders from the same opinions
+            final Schulze reference = new Schulze();
+            for (Schulze m : new Schulze[]{model, reference}) {
+                m.setCurrentTime(time);
+                m.setAgents(agents);
+                m.processExperiences(new ArrayList<>());
+                m.processOpinions(opinions);
+            }
+
+            final Map<Integer, PairwiseOrder> actual = model.getTrust(0), expected = reference.getTrust(0);
+            for (int i : agents) {
+                for (int j : agents) {
+                    Assert.assertEquals(expected.get(i).compareTo(expected.get(j)), actual.get(i).compareTo(actual.get(j)));
+                }
+            }
+        }
+    }
+
+    private static void shuffle(int[][] ranks, Random random) {
+        for (int[] row : ranks) {
+            for (int agent = 0; agent < row.length; agent++) {
+                row[agent] = agent;
+            }
+            for (int agent = row.length - 1; agent > 0; agent--) {
+                final int other = random.nextInt(agent + 1), swap = row[agent];
+                row[agent] = row[other];
+                row[other] = swap;
+            }
+        }
+    }
+
+    @Test
+    public void trustsAccurateReporters() {
+        final int n = 70;
+        final List<Integer> agents = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            agents.add(i);
+        }
+
+        // agents are as good as their ids; the first reporter tells the truth, the second lies
+        final List<Opinion> opinions = new ArrayList<>();
+        for (int reporter = 0; reporter < 2; reporter++) {
+            for (int agent : agents) {
+                opinions.add(new Opinion(reporter, agent, 0, 1, reporter == 0 ? agent / (double) n : 1 - agent / (double) n, 0));
+            }
+        }
+
+        final List<Experience> experiences = new ArrayList<>();
+        for (int agent = 0; agent < n; agent += 3) {
+            experiences.add(new Experience(agent, 0, 1, agent / (double) n));
+        }
+
+        final Schulze model = new Schulze();
+        model.setCurrentTime(1);
+        model.setAgents(agents);
+        model.processOpinions(opinions);
+        model.processExperiences(experiences);
+
+        final Map<Integer, PairwiseOrder> trust = model.getTrust(0);
+        for (int i = 1; i < n; i++) {
+            Assert.assertTrue(trust.get(i - 1).compareTo(trust.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void ranking() {
+        final int n = 80;
+        final Random random = new Random(0);
+        final List<Integer> agents = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            agents.add(3 * i + 1);
+        }
+
+        // reporters rank agents by their noisy quality, with few distinct values
+        final double[] quality = new double[n];
+        for (int i = 0; i < n; i++) {
+            quality[i] = random.nextDouble();
+        }
+        final List<Opinion> opinions = new ArrayList<>();
+        for (int reporter = 0; reporter < n; reporter++) {
+            for (int agent = 0; agent < n; agent++) {
+                opinions.add(new Opinion(agents.get(reporter), agents.get(agent), 0, 1,
+                        Math.round(5 * (quality[agent] + random.nextGaussian() * 0.3)) / 5d, 0));
+            }
+        }
+
+        final Schulze model = new Schulze();
+        model.setCurrentTime(1);
+        model.setAgents(agents);
+        model.processExperiences(new ArrayList<>());
+        model.processOpinions(opinions);
+
+        final Map<Integer, PairwiseOrder> trust = model.getTrust(0);
+        final int[] ranking = model.getRanking();
+
+        final int[] sorted = ranking.clone();
+        Arrays.sort(sorted);
+        Assert.assertArrayEquals(agents.stream().mapToInt(Integer::intValue).toArray(), sorted);
+
+        // no agent comes before an agent above it
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                Assert.assertTrue(trust.get(ranking[i]).compareTo(trust.get(ranking[j])) >= 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package credibilitygraphs.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+
+public class SortingTest {
+
+    @Test
+    public void stableSort() {
+        final Random random = new Random(0);
+
+        for (int length = 0; length < 100; length++) {
+            for (boolean descending : new boolean[]{false, true}) {
+                final double[] keys = new double[length + 5];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = random.nextInt(10);
+                }
+
+                final Integer[] expected = new Integer[length];
+                final int[] indices = new int[length];
+                for (int i = 0; i < length; i++) {
+                    expected[i] = length - 1 - i;
+                    indices[i] = length - 1 - i;
+                }
+                Arrays.sort(expected, Comparator.comparingDouble(i -> descending ? -keys[i] : keys[i]));
+
+                Sorting.sort(indices, length, keys, descending, new int[length]);
+
+                Assert.assertArrayEquals(Arrays.stream(expected).mapToInt(Integer::intValue).toArray(), indices);
+            }
+        }
+    }
+}